@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares rendering every mail of a bulk mail with Thymeleaf to assembling it from the pre-rendered fragments of
+ * {@link MailTemplates}. Both sides start from a warm cache, as they would after the first mail. Run with
+ * {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailTemplatesBenchmark {
+
+    private static final String YEAR = "2026";
+    private static final String MESSAGE = "<p>The doors open at 18:00, see you there!</p>" +
+            "<p>Check <a href=\"https://areafiftylan.nl\">the website</a> for the schedule.</p>";
+
+    @Param({ "1", "100", "10000" })
+    int recipients;
+
+    private SpringTemplateEngine templateEngine;
+    private MailTemplates mailTemplates;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        mailTemplates = new MailTemplates(templateEngine);
+        mailTemplates.year = YEAR;
+
+        names = IntStream.range(0, recipients).mapToObj(i -> "User " + i).toArray(String[]::new);
+        templateEngine.process("mailTemplate", context(names[0]));
+        mailTemplates.renderMail(names[0], MESSAGE);
+    }
+
+    private static Context context(String name) {
+        Context ctx = new Context(new Locale("en"));
+        ctx.setVariable("name", name);
+        ctx.setVariable("message", MESSAGE);
+        ctx.setVariable("year", YEAR);
+        return ctx;
+    }
+
+    @Benchmark
+    public void templateEngine(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(templateEngine.process("mailTemplate", context(name)));
+        }
+    }
+
+    @Benchmark
+    public void preRenderedFragments(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(mailTemplates.renderMail(name, MESSAGE));
+        }
+    }
+}
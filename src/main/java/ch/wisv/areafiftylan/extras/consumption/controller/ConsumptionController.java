@@ -21,6 +21,8 @@
 import ch.wisv.areafiftylan.exception.ConsumptionNotFoundException;
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanBatchDTO;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanResult;
 import ch.wisv.areafiftylan.extras.consumption.service.ConsumptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -28,7 +30,9 @@
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
 
 import static ch.wisv.areafiftylan.utils.ResponseEntityBuilder.createResponseEntity;
 
@@ -73,9 +77,15 @@ public Collection<Consumption> consumptionsMade(@PathVariable Long ticketId) {
         return consumptionService.getByTicketIdIfValid(ticketId).getConsumptionsMade();
     }
 
+    /**
+     * Claim a consumption. Scanners can send an Idempotency-Key header, so a retried request succeeds again instead of
+     * answering that the consumption was already claimed. Resets are idempotent by themselves.
+     */
     @PostMapping("/{ticketId}/consume")
-    public ResponseEntity<?> consume(@PathVariable Long ticketId, @RequestBody Long consumptionId) {
-        consumptionService.consume(ticketId, consumptionId);
+    public ResponseEntity<?> consume(@PathVariable Long ticketId, @RequestBody Long consumptionId,
+                                     @RequestHeader(value = "Idempotency-Key", required = false)
+                                             String idempotencyKey) {
+        consumptionService.consume(ticketId, consumptionId, idempotencyKey);
         return createResponseEntity(HttpStatus.OK, "Successfully consumed consumption");
     }
 
@@ -85,6 +95,17 @@ public ResponseEntity<?> reset(@PathVariable Long ticketId, @RequestBody Long co
         return createResponseEntity(HttpStatus.OK, "Successfully reset consumption");
     }
 
+    /**
+     * Process scans that a scanner queued while it was offline, in one round trip.
+     *
+     * @param scanBatch The scans, in the order they were made
+     * @return The result of each scan, in the same order
+     */
+    @PostMapping("/scans")
+    public List<ScanResult> processScans(@RequestBody @Valid ScanBatchDTO scanBatch) {
+        return consumptionService.processScans(scanBatch.getEvents());
+    }
+
     @ExceptionHandler(value = AlreadyConsumedException.class)
     public ResponseEntity<?> handleAlreadyConsumed(AlreadyConsumedException e) {
         return createResponseEntity(HttpStatus.CONFLICT, e.getMessage());
@@ -17,12 +17,14 @@
 
 package ch.wisv.areafiftylan.extras.consumption.model;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
+/**
+ * Projection of a Consumption with the number of tickets it has been claimed on.
+ */
+public interface ConsumptionClaimCount {
+
+    Long getConsumptionId();
 
-import java.util.Optional;
+    String getName();
 
-@Repository
-public interface ConsumptionMapsRepository extends JpaRepository<ConsumptionMap, Long> {
-    Optional<ConsumptionMap> findByTicketId(Long ticketId);
+    Long getClaimed();
 }
@@ -17,52 +17,24 @@
 
 package ch.wisv.areafiftylan.extras.consumption.model;
 
-import ch.wisv.areafiftylan.exception.AlreadyConsumedException;
 import ch.wisv.areafiftylan.products.model.Ticket;
+import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.NoArgsConstructor;
-import lombok.NonNull;
 
-import javax.persistence.*;
-import java.util.ArrayList;
 import java.util.Collection;
 
-@Entity
+/**
+ * The Consumptions claimed on a Ticket, as recorded in the {@link ConsumptionRecord} ledger.
+ */
 @Data
-@NoArgsConstructor
+@AllArgsConstructor
 public class ConsumptionMap {
 
-    @Id
-    @GeneratedValue
-    Long id;
-
-    @ManyToMany(fetch = FetchType.EAGER)
     private Collection<Consumption> consumptionsMade;
 
-    @NonNull
-    @OneToOne(targetEntity = Ticket.class, cascade = CascadeType.MERGE)
     private Ticket ticket;
 
-    public ConsumptionMap(Ticket t) {
-        this.consumptionsMade = new ArrayList<>();
-        this.ticket = t;
-    }
-
     public boolean isConsumed(Consumption consumption) {
         return consumptionsMade.contains(consumption);
     }
-
-    public void consume(Consumption consumption) {
-        if (isConsumed(consumption)) {
-            throw new AlreadyConsumedException(consumption);
-        }
-
-        consumptionsMade.add(consumption);
-    }
-
-    public void reset(Consumption consumption) {
-        if (isConsumed(consumption)) {
-            consumptionsMade.remove(consumption);
-        }
-    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.consumption.model;
+
+import ch.wisv.areafiftylan.products.model.Ticket;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One Consumption claimed on one Ticket. The ticket and consumption form the primary key, so a Consumption can only be
+ * claimed once per Ticket, no matter how many scanners try at the same time. Records are always new when saved, so
+ * claiming is a single INSERT.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@IdClass(ConsumptionRecord.Key.class)
+@Table(name = "consumption_record", indexes = @Index(name = "consumption_record_consumption_idx",
+        columnList = "consumption_id"))
+public class ConsumptionRecord implements Persistable<ConsumptionRecord.Key> {
+
+    @Id
+    @Column(name = "ticket_id")
+    private Long ticketId;
+
+    @Id
+    @Column(name = "consumption_id")
+    private Long consumptionId;
+
+    @Column(nullable = false)
+    private LocalDateTime consumedAt;
+
+    // Sent by scanners so a retried request can be recognized
+    private String idempotencyKey;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ticket_id", insertable = false, updatable = false)
+    private Ticket ticket;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "consumption_id", insertable = false, updatable = false)
+    private Consumption consumption;
+
+    public ConsumptionRecord(Long ticketId, Long consumptionId, String idempotencyKey) {
+        this(ticketId, consumptionId, LocalDateTime.now(), idempotencyKey);
+    }
+
+    public ConsumptionRecord(Long ticketId, Long consumptionId, LocalDateTime consumedAt, String idempotencyKey) {
+        this.ticketId = ticketId;
+        this.consumptionId = consumptionId;
+        this.consumedAt = consumedAt;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(ticketId, consumptionId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long ticketId;
+        private Long consumptionId;
+    }
+}
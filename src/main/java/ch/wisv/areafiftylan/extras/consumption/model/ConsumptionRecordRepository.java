@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.consumption.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ConsumptionRecordRepository extends JpaRepository<ConsumptionRecord, ConsumptionRecord.Key> {
+
+    List<ConsumptionRecord> findAllByTicketIdIn(Collection<Long> ticketIds);
+
+    boolean existsByTicketIdAndConsumptionIdAndIdempotencyKey(Long ticketId, Long consumptionId,
+                                                              String idempotencyKey);
+
+    @Query("SELECT r.consumption FROM ConsumptionRecord r WHERE r.ticketId = :ticketId ORDER BY r.consumedAt")
+    List<Consumption> findConsumptionsByTicketId(@Param("ticketId") Long ticketId);
+
+    @Query("SELECT r FROM ConsumptionRecord r JOIN FETCH r.ticket JOIN FETCH r.consumption " +
+            "ORDER BY r.ticketId, r.consumedAt")
+    List<ConsumptionRecord> findAllWithTicketAndConsumption();
+
+    @Query("SELECT c.id AS consumptionId, c.name AS name, COUNT(r.ticketId) AS claimed FROM Consumption c " +
+            "LEFT JOIN ConsumptionRecord r ON r.consumptionId = c.id GROUP BY c.id, c.name ORDER BY c.id")
+    List<ConsumptionClaimCount> countClaimsPerConsumption();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ConsumptionRecord r WHERE r.ticketId = :ticketId AND r.consumptionId = :consumptionId")
+    int deleteByTicketIdAndConsumptionId(@Param("ticketId") Long ticketId,
+                                         @Param("consumptionId") Long consumptionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ConsumptionRecord r WHERE r.consumptionId = :consumptionId")
+    int deleteByConsumptionId(@Param("consumptionId") Long consumptionId);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.consumption.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * A scan made by a bar or door scanner, possibly while it was offline. The ticket is identified by its RFID tag or by
+ * its id. Scans without a consumption only check the ticket.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ScanEvent {
+
+    // Chosen by the scanner, and used as idempotency key when the scan is sent again
+    @NotNull
+    private String eventId;
+
+    private String rfid;
+
+    private Long ticketId;
+
+    private Long consumptionId;
+
+    private LocalDateTime scannedAt;
+}
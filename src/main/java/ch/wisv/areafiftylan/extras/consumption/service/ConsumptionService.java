@@ -19,8 +19,11 @@
 
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanEvent;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanResult;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface ConsumptionService {
     ConsumptionMap getByTicketIdIfValid(Long ticketId);
@@ -29,6 +32,16 @@ public interface ConsumptionService {
 
     void consume(Long ticketId, Long consumptionId);
 
+    /**
+     * Claim a Consumption on a Ticket. A request that is retried with the same idempotency key succeeds again instead
+     * of failing with an AlreadyConsumedException.
+     *
+     * @param ticketId       The Ticket to claim the Consumption on
+     * @param consumptionId  The Consumption to claim
+     * @param idempotencyKey Key chosen by the client for this request, or null
+     */
+    void consume(Long ticketId, Long consumptionId, String idempotencyKey);
+
     void reset(Long ticketId, Long consumptionId);
 
     Consumption getByConsumptionId(Long consumptionId);
@@ -40,4 +53,13 @@ public interface ConsumptionService {
     void removePossibleConsumption(Long consumptionId);
 
     Consumption addPossibleConsumption(String consumptionName);
+
+    /**
+     * Process scans that scanners may have queued while offline, in order and in a single transaction. A scan that
+     * was processed before, recognized by its event id, gets the same result again.
+     *
+     * @param events The scans, in the order they were made
+     * @return The result of each scan, in the same order
+     */
+    List<ScanResult> processScans(List<ScanEvent> events);
 }
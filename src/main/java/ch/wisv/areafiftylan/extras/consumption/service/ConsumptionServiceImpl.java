@@ -17,44 +17,66 @@
 
 package ch.wisv.areafiftylan.extras.consumption.service;
 
+import ch.wisv.areafiftylan.exception.AlreadyConsumedException;
 import ch.wisv.areafiftylan.exception.ConsumptionNotFoundException;
 import ch.wisv.areafiftylan.exception.InvalidTicketException;
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
-import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMapsRepository;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionRecord;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionRecordRepository;
 import ch.wisv.areafiftylan.extras.consumption.model.PossibleConsumptionsRepository;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanEvent;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanResult;
+import ch.wisv.areafiftylan.extras.consumption.model.ScanStatus;
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterService;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDService;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Collection;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static ch.wisv.areafiftylan.utils.TransactionHooks.afterCommit;
+
 @Service
 public class ConsumptionServiceImpl implements ConsumptionService {
-    private final ConsumptionMapsRepository consumptionMapsRepository;
+    private static final int SCAN_BATCH_ATTEMPTS = 3;
+
+    private final ConsumptionRecordRepository consumptionRecordRepository;
     private final PossibleConsumptionsRepository possibleConsumptionsRepository;
     private final TicketService ticketService;
+    private final TicketRepository ticketRepository;
+    private final RFIDService rfidService;
+    private final LiveCounterService liveCounterService;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public ConsumptionServiceImpl(ConsumptionMapsRepository consumptionMapsRepository,
+    public ConsumptionServiceImpl(ConsumptionRecordRepository consumptionRecordRepository,
                                   PossibleConsumptionsRepository possibleConsumptionsRepository,
-                                  TicketService ticketService) {
-        this.consumptionMapsRepository = consumptionMapsRepository;
+                                  TicketService ticketService, TicketRepository ticketRepository,
+                                  RFIDService rfidService, LiveCounterService liveCounterService,
+                                  PlatformTransactionManager transactionManager) {
+        this.consumptionRecordRepository = consumptionRecordRepository;
         this.possibleConsumptionsRepository = possibleConsumptionsRepository;
         this.ticketService = ticketService;
+        this.ticketRepository = ticketRepository;
+        this.rfidService = rfidService;
+        this.liveCounterService = liveCounterService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     public ConsumptionMap getByTicketIdIfValid(Long ticketId) {
-        if (!ticketService.getTicketById(ticketId).isValid()) {
-            throw new InvalidTicketException("Ticket is invalid; It can not be used for consumptions.");
-        }
-        Optional<ConsumptionMap> mapOptional = consumptionMapsRepository.findByTicketId(ticketId);
-        return mapOptional.orElseGet(() -> initializeConsumptionMap(ticketId));
+        Ticket ticket = getValidTicket(ticketId);
+        return new ConsumptionMap(consumptionRecordRepository.findConsumptionsByTicketId(ticketId), ticket);
     }
 
     @Override
@@ -63,25 +85,41 @@ public boolean isConsumed(Long ticketId, Long consumptionId) {
         return getByTicketIdIfValid(ticketId).isConsumed(c);
     }
 
-    private ConsumptionMap initializeConsumptionMap(Long ticketId) {
-        Ticket t = ticketService.getTicketById(ticketId);
-        return consumptionMapsRepository.saveAndFlush(new ConsumptionMap(t));
+    private Ticket getValidTicket(Long ticketId) {
+        Ticket ticket = ticketService.getTicketById(ticketId);
+        if (!ticket.isValid()) {
+            throw new InvalidTicketException("Ticket is invalid; It can not be used for consumptions.");
+        }
+        return ticket;
     }
 
     @Override
     public void consume(Long ticketId, Long consumptionId) {
-        ConsumptionMap consumptions = getByTicketIdIfValid(ticketId);
+        consume(ticketId, consumptionId, null);
+    }
+
+    @Override
+    public void consume(Long ticketId, Long consumptionId, String idempotencyKey) {
+        getValidTicket(ticketId);
         Consumption consumption = getByConsumptionId(consumptionId);
-        consumptions.consume(consumption);
-        consumptionMapsRepository.saveAndFlush(consumptions);
+        try {
+            // The primary key on (ticket, consumption) turns a second claim into a conflict, even between scanners
+            consumptionRecordRepository.saveAndFlush(new ConsumptionRecord(ticketId, consumptionId, idempotencyKey));
+            afterCommit(() -> liveCounterService.claimsChanged(consumptionId, 1));
+        } catch (DataIntegrityViolationException e) {
+            if (idempotencyKey == null || !consumptionRecordRepository
+                    .existsByTicketIdAndConsumptionIdAndIdempotencyKey(ticketId, consumptionId, idempotencyKey)) {
+                throw new AlreadyConsumedException(consumption);
+            }
+        }
     }
 
     @Override
     public void reset(Long ticketId, Long consumptionId) {
-        ConsumptionMap consumptions = getByTicketIdIfValid(ticketId);
-        Consumption consumption = getByConsumptionId(consumptionId);
-        consumptions.reset(consumption);
-        consumptionMapsRepository.saveAndFlush(consumptions);
+        getValidTicket(ticketId);
+        getByConsumptionId(consumptionId);
+        int deleted = consumptionRecordRepository.deleteByTicketIdAndConsumptionId(ticketId, consumptionId);
+        afterCommit(() -> liveCounterService.claimsChanged(consumptionId, -deleted));
     }
 
     @Override
@@ -97,14 +135,23 @@ public Collection<Consumption> getPossibleConsumptions() {
 
     @Override
     public Collection<ConsumptionMap> getConsumptionMaps() {
-        return consumptionMapsRepository.findAll();
+        Map<Long, ConsumptionMap> maps = new LinkedHashMap<>();
+        for (ConsumptionRecord record : consumptionRecordRepository.findAllWithTicketAndConsumption()) {
+            maps.computeIfAbsent(record.getTicketId(), id -> new ConsumptionMap(new ArrayList<>(), record.getTicket()))
+                    .getConsumptionsMade().add(record.getConsumption());
+        }
+        return maps.values();
     }
 
     @Override
     public void removePossibleConsumption(Long consumptionId) {
-        resetConsumptionEverywhere(consumptionId);
-        Consumption consumption = getByConsumptionId(consumptionId);
-        possibleConsumptionsRepository.delete(consumption);
+        // One DELETE for the claims on every ticket, then the consumption itself
+        transactionTemplate.executeWithoutResult(status -> {
+            Consumption consumption = getByConsumptionId(consumptionId);
+            consumptionRecordRepository.deleteByConsumptionId(consumptionId);
+            possibleConsumptionsRepository.delete(consumption);
+            afterCommit(() -> liveCounterService.consumptionRemoved(consumptionId));
+        });
     }
 
     @Override
@@ -113,17 +160,95 @@ public Consumption addPossibleConsumption(String consumptionName) {
             throw new DuplicateKeyException("Consumption " + consumptionName + " is already supported");
         }
 
-        Consumption consumption = new Consumption(consumptionName);
-        return possibleConsumptionsRepository.saveAndFlush(consumption);
+        Consumption consumption = possibleConsumptionsRepository.saveAndFlush(new Consumption(consumptionName));
+        afterCommit(() -> liveCounterService.consumptionAdded(consumption));
+        return consumption;
+    }
+
+    @Override
+    public List<ScanResult> processScans(List<ScanEvent> events) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyScans(events));
+            } catch (DataIntegrityViolationException e) {
+                // Another scanner claimed one of the same consumptions meanwhile, the next attempt will see that claim
+                if (attempt == SCAN_BATCH_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
     }
 
-    private void resetConsumptionEverywhere(Long consumptionId) {
-        Collection<Long> allValidTicketIds = ticketService.getAllTickets().
-                stream().
-                filter(Ticket::isValid).
-                map(Ticket::getId).
-                collect(Collectors.toList());
+    private List<ScanResult> applyScans(List<ScanEvent> events) {
+        // Everything the scans refer to is looked up in one query per kind, before any of them is applied
+        Set<String> rfids = events.stream()
+                .filter(event -> event.getTicketId() == null && event.getRfid() != null)
+                .map(ScanEvent::getRfid)
+                .collect(Collectors.toSet());
+        Map<String, Long> ticketIdsByRfid =
+                rfids.isEmpty() ? Collections.emptyMap() : rfidService.getTicketIdsByRFIDs(rfids);
+
+        Set<Long> ticketIds = events.stream()
+                .map(event -> resolveTicketId(event, ticketIdsByRfid))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> validTicketIds = ticketRepository.findAllById(ticketIds).stream()
+                .filter(Ticket::isValid)
+                .map(Ticket::getId)
+                .collect(Collectors.toSet());
+
+        Set<Long> consumptionIds = events.stream()
+                .map(ScanEvent::getConsumptionId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> knownConsumptionIds = possibleConsumptionsRepository.findAllById(consumptionIds).stream()
+                .map(Consumption::getId)
+                .collect(Collectors.toSet());
+
+        // The idempotency key of every claim made on these tickets so far
+        Map<ConsumptionRecord.Key, String> claims = new HashMap<>();
+        if (!validTicketIds.isEmpty()) {
+            consumptionRecordRepository.findAllByTicketIdIn(validTicketIds)
+                    .forEach(record -> claims.put(record.getId(), record.getIdempotencyKey()));
+        }
 
-        allValidTicketIds.forEach(id -> reset(id, consumptionId));
+        List<ScanResult> results = new ArrayList<>(events.size());
+        List<ConsumptionRecord> newRecords = new ArrayList<>();
+        for (ScanEvent event : events) {
+            Long ticketId = resolveTicketId(event, ticketIdsByRfid);
+            ScanStatus status;
+            if (ticketId == null || !validTicketIds.contains(ticketId)) {
+                status = ScanStatus.INVALID_TICKET;
+            } else if (event.getConsumptionId() == null) {
+                status = ScanStatus.OK;
+            } else if (!knownConsumptionIds.contains(event.getConsumptionId())) {
+                status = ScanStatus.UNKNOWN_CONSUMPTION;
+            } else {
+                ConsumptionRecord.Key key = new ConsumptionRecord.Key(ticketId, event.getConsumptionId());
+                if (claims.containsKey(key)) {
+                    status = event.getEventId().equals(claims.get(key)) ? ScanStatus.OK : ScanStatus.ALREADY_CONSUMED;
+                } else {
+                    claims.put(key, event.getEventId());
+                    LocalDateTime consumedAt =
+                            event.getScannedAt() != null ? event.getScannedAt() : LocalDateTime.now();
+                    newRecords.add(new ConsumptionRecord(ticketId, event.getConsumptionId(), consumedAt,
+                            event.getEventId()));
+                    status = ScanStatus.OK;
+                }
+            }
+            results.add(new ScanResult(event.getEventId(), status, ticketId));
+        }
+
+        consumptionRecordRepository.saveAll(newRecords);
+        consumptionRecordRepository.flush();
+        afterCommit(() -> newRecords.forEach(record -> liveCounterService.claimsChanged(record.getConsumptionId(), 1)));
+        return results;
+    }
+
+    private static Long resolveTicketId(ScanEvent event, Map<String, Long> ticketIdsByRfid) {
+        if (event.getTicketId() != null) {
+            return event.getTicketId();
+        }
+        return event.getRfid() == null ? null : ticketIdsByRfid.get(event.getRfid());
     }
 }
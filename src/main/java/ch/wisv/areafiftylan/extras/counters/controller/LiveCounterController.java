@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.counters.controller;
+
+import ch.wisv.areafiftylan.extras.counters.model.LiveCounters;
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterService;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@PreAuthorize("hasRole('ADMIN')")
+@RequestMapping("/counters")
+public class LiveCounterController {
+
+    private final LiveCounterService liveCounterService;
+
+    public LiveCounterController(LiveCounterService liveCounterService) {
+        this.liveCounterService = liveCounterService;
+    }
+
+    /**
+     * Get the number of claims of each consumption and the number of RFID-linked tickets. These are kept in memory,
+     * so the dashboard can poll this as often as it likes.
+     *
+     * @return The current counters
+     */
+    @GetMapping
+    public LiveCounters getCounters() {
+        return liveCounterService.getCounters();
+    }
+
+    /**
+     * Stream the counters as Server-Sent Events. A "counters" event is sent right away and whenever the counters
+     * changed, at most once per second.
+     *
+     * @return The event stream
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCounters() {
+        return liveCounterService.subscribe();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.counters.service;
+
+import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
+import ch.wisv.areafiftylan.extras.counters.model.LiveCounters;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * In-memory counters of claimed consumptions and RFID-linked tickets, for the crew dashboard. The services that change
+ * these numbers report every committed change, so reading the counters never touches the database.
+ */
+public interface LiveCounterService {
+
+    LiveCounters getCounters();
+
+    /**
+     * Subscribe to the counters. The current counters are sent right away, and again whenever they changed, at most
+     * once per second.
+     *
+     * @return The emitter for this subscriber
+     */
+    SseEmitter subscribe();
+
+    void consumptionAdded(Consumption consumption);
+
+    void consumptionRemoved(Long consumptionId);
+
+    void claimsChanged(Long consumptionId, long delta);
+
+    void linkedTicketsChanged(long delta);
+
+    /**
+     * Load the counters from the database again. This also picks up changes made on other nodes.
+     */
+    void reload();
+}
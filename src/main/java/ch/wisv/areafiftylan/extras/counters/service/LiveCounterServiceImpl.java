@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.counters.service;
+
+import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionClaimCount;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionRecordRepository;
+import ch.wisv.areafiftylan.extras.counters.model.ConsumptionCounter;
+import ch.wisv.areafiftylan.extras.counters.model.LiveCounters;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinkRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class LiveCounterServiceImpl implements LiveCounterService {
+
+    private static final long SUBSCRIBER_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    private static final long PUBLISH_INTERVAL_MILLIS = 1000;
+
+    private final ConsumptionRecordRepository consumptionRecordRepository;
+    private final RFIDLinkRepository rfidLinkRepository;
+
+    private final ConcurrentMap<Long, Counter> consumptions = new ConcurrentSkipListMap<>();
+    private final AtomicLong linkedTickets = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+
+    private final Set<SseEmitter> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile long publishedVersion;
+
+    // Changes are coalesced and pushed from this thread, so a scan never waits for a dashboard
+    private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("live-counters").setDaemon(true).build());
+
+    public LiveCounterServiceImpl(ConsumptionRecordRepository consumptionRecordRepository,
+                                  RFIDLinkRepository rfidLinkRepository) {
+        this.consumptionRecordRepository = consumptionRecordRepository;
+        this.rfidLinkRepository = rfidLinkRepository;
+        publisher.scheduleWithFixedDelay(this::publish, PUBLISH_INTERVAL_MILLIS, PUBLISH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        List<ConsumptionClaimCount> counts = consumptionRecordRepository.countClaimsPerConsumption();
+        long links = rfidLinkRepository.count();
+
+        // Changes reported while loading may be counted twice or not at all, the next reload corrects that
+        consumptions.keySet().retainAll(
+                counts.stream().map(ConsumptionClaimCount::getConsumptionId).collect(Collectors.toSet()));
+        for (ConsumptionClaimCount count : counts) {
+            consumptions.computeIfAbsent(count.getConsumptionId(), id -> new Counter(count.getName()))
+                    .claimed.set(count.getClaimed());
+        }
+        linkedTickets.set(links);
+        version.incrementAndGet();
+        log.debug("Loaded counters of {} consumptions and {} linked tickets", counts.size(), links);
+    }
+
+    @Override
+    public LiveCounters getCounters() {
+        long currentVersion = version.get();
+        List<ConsumptionCounter> counters = new ArrayList<>(consumptions.size());
+        consumptions.forEach((id, counter) -> counters.add(new ConsumptionCounter(id, counter.name,
+                counter.claimed.get())));
+        return new LiveCounters(currentVersion, counters, linkedTickets.get());
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(SUBSCRIBER_TIMEOUT);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+
+        LiveCounters counters = getCounters();
+        try {
+            emitter.send(SseEmitter.event().name("counters").id(String.valueOf(counters.getVersion())).data(counters));
+            subscribers.add(emitter);
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Override
+    public void consumptionAdded(Consumption consumption) {
+        consumptions.putIfAbsent(consumption.getId(), new Counter(consumption.getName()));
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void consumptionRemoved(Long consumptionId) {
+        consumptions.remove(consumptionId);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void claimsChanged(Long consumptionId, long delta) {
+        Counter counter = consumptions.get(consumptionId);
+        if (counter != null && delta != 0) {
+            counter.claimed.addAndGet(delta);
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void linkedTicketsChanged(long delta) {
+        linkedTickets.addAndGet(delta);
+        version.incrementAndGet();
+    }
+
+    private void publish() {
+        if (subscribers.isEmpty() || version.get() == publishedVersion) {
+            return;
+        }
+        LiveCounters counters = getCounters();
+        for (SseEmitter emitter : subscribers) {
+            try {
+                emitter.send(
+                        SseEmitter.event().name("counters").id(String.valueOf(counters.getVersion())).data(counters));
+            } catch (IOException | IllegalStateException e) {
+                // The client went away, the emitter callbacks take care of the rest
+                subscribers.remove(emitter);
+            }
+        }
+        publishedVersion = counters.getVersion();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+        publisher.shutdownNow();
+    }
+
+    private static class Counter {
+        private final String name;
+        private final AtomicLong claimed = new AtomicLong();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -26,6 +26,8 @@
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {@Index(name = "rfidlink_rfid_idx", columnList = "rfid"),
+        @Index(name = "rfidlink_ticket_id_idx", columnList = "ticket_id")})
 @Data
 @NoArgsConstructor
 @RequiredArgsConstructor
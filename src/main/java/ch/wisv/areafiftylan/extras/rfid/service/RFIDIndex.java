@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.extras.rfid.service;
+
+import ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of all RFIDLinks, so a scanner tap is a hash lookup instead of a query. The index is loaded when the
+ * application is ready, kept in sync by the RFIDService and reloaded periodically to pick up links changed on other
+ * nodes.
+ * <p>
+ * Changes made on this node show up right away, but a link removed, relinked or handed to another owner on a different
+ * node is only noticed by the next reload, which runs every minute. So the index only answers scanner lookups. Anything
+ * that changes links or credits consumptions checks the database instead. A miss doesn't prove a link doesn't exist
+ * either, so callers check the database before giving a negative answer and add what they find with
+ * {@link #put(RFIDLinkEntry)}.
+ */
+@Component
+@Slf4j
+public class RFIDIndex {
+
+    private final RFIDLinkRepository rfidLinkRepository;
+
+    private volatile Links links = new Links(0);
+
+    private final Object reloadLock = new Object();
+
+    // Tags removed while a reload reads the database, the links it read may still contain them. Guarded by this.
+    private Set<String> removedDuringReload;
+
+    public RFIDIndex(RFIDLinkRepository rfidLinkRepository) {
+        this.rfidLinkRepository = rfidLinkRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                removedDuringReload = new HashSet<>();
+            }
+            try {
+                Collection<RFIDLinkEntry> entries = rfidLinkRepository.findAllEntries();
+                Links loaded = new Links(entries.size());
+                entries.forEach(loaded::add);
+                synchronized (this) {
+                    removedDuringReload.forEach(loaded::remove);
+                    links = loaded;
+                }
+                log.debug("Loaded {} RFID links into the RFID index", entries.size());
+            } finally {
+                synchronized (this) {
+                    removedDuringReload = null;
+                }
+            }
+        }
+    }
+
+    public Optional<RFIDLinkEntry> get(String rfid) {
+        return Optional.ofNullable(links.byRfid.get(rfid));
+    }
+
+    public boolean isTicketLinked(Long ticketId) {
+        return links.rfidByTicketId.containsKey(ticketId);
+    }
+
+    public boolean isOwnerLinked(String email) {
+        return email != null && links.linkedOwners.containsKey(email);
+    }
+
+    public synchronized void put(RFIDLinkEntry entry) {
+        links.remove(entry.getRfid());
+        links.add(entry);
+    }
+
+    public synchronized void remove(String rfid) {
+        links.remove(rfid);
+        if (removedDuringReload != null) {
+            removedDuringReload.add(rfid);
+        }
+    }
+
+    private static class Links {
+        private final ConcurrentMap<String, RFIDLinkEntry> byRfid;
+        private final ConcurrentMap<Long, String> rfidByTicketId;
+        // Owners are counted, as one user can have several linked tickets
+        private final ConcurrentMap<String, Integer> linkedOwners;
+
+        private Links(int size) {
+            byRfid = new ConcurrentHashMap<>(size * 2);
+            rfidByTicketId = new ConcurrentHashMap<>(size * 2);
+            linkedOwners = new ConcurrentHashMap<>(size * 2);
+        }
+
+        private void add(RFIDLinkEntry entry) {
+            byRfid.put(entry.getRfid(), entry);
+            rfidByTicketId.put(entry.getTicketId(), entry.getRfid());
+            if (entry.getEmail() != null) {
+                linkedOwners.merge(entry.getEmail(), 1, Integer::sum);
+            }
+        }
+
+        private void remove(String rfid) {
+            RFIDLinkEntry entry = byRfid.remove(rfid);
+            if (entry == null) {
+                return;
+            }
+            rfidByTicketId.remove(entry.getTicketId(), rfid);
+            if (entry.getEmail() != null) {
+                linkedOwners.computeIfPresent(entry.getEmail(), (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+}
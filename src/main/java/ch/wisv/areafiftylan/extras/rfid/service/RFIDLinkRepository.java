@@ -18,9 +18,14 @@
 package ch.wisv.areafiftylan.extras.rfid.service;
 
 import ch.wisv.areafiftylan.extras.rfid.model.RFIDLink;
+import ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -30,4 +35,18 @@ public interface RFIDLinkRepository extends JpaRepository<RFIDLink, Long> {
     Optional<RFIDLink> findByTicketId(Long ticketId);
 
     boolean existsRFIDLinkByTicket_Owner_Email(String email);
+
+    @Query("SELECT new ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry(l.rfid, t.id, u.id, u.email, " +
+            "p.displayName, t.valid) FROM RFIDLink l JOIN l.ticket t LEFT JOIN t.owner u LEFT JOIN u.profile p")
+    List<RFIDLinkEntry> findAllEntries();
+
+    @Query("SELECT new ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry(l.rfid, t.id, u.id, u.email, " +
+            "p.displayName, t.valid) FROM RFIDLink l JOIN l.ticket t LEFT JOIN t.owner u LEFT JOIN u.profile p " +
+            "WHERE l.rfid = :rfid")
+    Optional<RFIDLinkEntry> findEntryByRfid(@Param("rfid") String rfid);
+
+    @Query("SELECT new ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry(l.rfid, t.id, u.id, u.email, " +
+            "p.displayName, t.valid) FROM RFIDLink l JOIN l.ticket t LEFT JOIN t.owner u LEFT JOIN u.profile p " +
+            "WHERE l.rfid IN :rfids")
+    List<RFIDLinkEntry> findEntriesByRfidIn(@Param("rfids") Collection<String> rfids);
 }
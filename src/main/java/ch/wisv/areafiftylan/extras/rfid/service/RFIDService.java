@@ -18,9 +18,11 @@
 package ch.wisv.areafiftylan.extras.rfid.service;
 
 import ch.wisv.areafiftylan.extras.rfid.model.RFIDLink;
+import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.users.model.User;
 
 import java.util.Collection;
+import java.util.Map;
 
 public interface RFIDService {
 
@@ -28,10 +30,26 @@ public interface RFIDService {
 
     Long getTicketIdByRFID(String rfid);
 
+    /**
+     * Look up the tickets of many RFID tags at once. Tags that aren't linked are left out of the result. Unlike the
+     * single lookups, this always reads the database, as it's used to credit consumptions.
+     *
+     * @param rfids The RFID tags to look up
+     * @return The ticket id of each linked tag
+     */
+    Map<String, Long> getTicketIdsByRFIDs(Collection<String> rfids);
+
     User getUserByRFID(String rfid);
 
     RFIDLink addRFIDLink(String rfid, Long ticketId);
 
+    /**
+     * Update the indexed owner of the RFID link of a ticket, if it has one, after the ticket changed hands.
+     *
+     * @param ticket The ticket with its new owner
+     */
+    void ticketOwnerChanged(Ticket ticket);
+
     RFIDLink removeRFIDLink(String rfid);
 
     RFIDLink removeRFIDLink(Long ticketId);
@@ -18,14 +18,23 @@
 package ch.wisv.areafiftylan.extras.rfid.service;
 
 import ch.wisv.areafiftylan.exception.*;
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterService;
 import ch.wisv.areafiftylan.extras.rfid.model.RFIDLink;
+import ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static ch.wisv.areafiftylan.utils.TransactionHooks.afterCommit;
 
 @Service
 public class RFIDServiceImpl implements RFIDService {
@@ -34,11 +43,18 @@ public class RFIDServiceImpl implements RFIDService {
 
     private final RFIDLinkRepository rfidLinkRepository;
     private final TicketRepository ticketRepository;
+    private final UserRepository userRepository;
+    private final RFIDIndex rfidIndex;
+    private final LiveCounterService liveCounterService;
 
     @Autowired
-    public RFIDServiceImpl(RFIDLinkRepository rfidLinkRepository, TicketRepository ticketRepository) {
+    public RFIDServiceImpl(RFIDLinkRepository rfidLinkRepository, TicketRepository ticketRepository,
+                           UserRepository userRepository, RFIDIndex rfidIndex, LiveCounterService liveCounterService) {
         this.rfidLinkRepository = rfidLinkRepository;
         this.ticketRepository = ticketRepository;
+        this.userRepository = userRepository;
+        this.rfidIndex = rfidIndex;
+        this.liveCounterService = liveCounterService;
     }
 
     private Ticket getTicketById(Long ticketId) {
@@ -53,12 +69,30 @@ public Collection<RFIDLink> getAllRFIDLinks() {
 
     @Override
     public Long getTicketIdByRFID(String rfid) {
-        return getLinkByRFID(rfid).getTicket().getId();
+        return getEntryByRFID(rfid).getTicketId();
+    }
+
+    @Override
+    public Map<String, Long> getTicketIdsByRFIDs(Collection<String> rfids) {
+        // Consumptions are credited to these tickets, so they come from the database rather than the index. The
+        // index is brought up to date with what was found while we're at it.
+        List<RFIDLinkEntry> entries = rfidLinkRepository.findEntriesByRfidIn(rfids);
+        Map<String, Long> ticketIds = new HashMap<>();
+        entries.forEach(entry -> ticketIds.put(entry.getRfid(), entry.getTicketId()));
+        afterCommit(() -> {
+            entries.forEach(rfidIndex::put);
+            rfids.stream().filter(rfid -> !ticketIds.containsKey(rfid)).forEach(rfidIndex::remove);
+        });
+        return ticketIds;
     }
 
     @Override
     public User getUserByRFID(String rfid) {
-        return getLinkByRFID(rfid).getTicket().getOwner();
+        Long userId = getEntryByRFID(rfid).getUserId();
+        if (userId == null) {
+            return null;
+        }
+        return userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
     }
 
     @Override
@@ -77,21 +111,49 @@ public RFIDLink addRFIDLink(String rfid, Long ticketId) {
         }
 
         Ticket ticket = getTicketById(ticketId);
-        RFIDLink newLink = new RFIDLink(rfid, ticket);
-        return rfidLinkRepository.saveAndFlush(newLink);
+        RFIDLink newLink = rfidLinkRepository.saveAndFlush(new RFIDLink(rfid, ticket));
+        RFIDLinkEntry entry = createEntry(rfid, ticket);
+        afterCommit(() -> {
+            rfidIndex.put(entry);
+            liveCounterService.linkedTicketsChanged(1);
+        });
+        return newLink;
+    }
+
+    @Override
+    public void ticketOwnerChanged(Ticket ticket) {
+        rfidLinkRepository.findByTicketId(ticket.getId()).ifPresent(link -> {
+            RFIDLinkEntry entry = createEntry(link.getRfid(), ticket);
+            afterCommit(() -> rfidIndex.put(entry));
+        });
+    }
+
+    private static RFIDLinkEntry createEntry(String rfid, Ticket ticket) {
+        User owner = ticket.getOwner();
+        return new RFIDLinkEntry(rfid, ticket.getId(), owner == null ? null : owner.getId(),
+                owner == null ? null : owner.getEmail(),
+                owner == null || owner.getProfile() == null ? null : owner.getProfile().getDisplayName(),
+                ticket.isValid());
     }
 
     @Override
     public RFIDLink removeRFIDLink(String rfid) {
-        RFIDLink link = getLinkByRFID(rfid);
-        rfidLinkRepository.delete(link);
-        return link;
+        return removeLink(getLinkByRFID(rfid));
     }
 
     @Override
     public RFIDLink removeRFIDLink(Long ticketId) {
-        RFIDLink link = getLinkByTicketId(ticketId);
+        return removeLink(getLinkByTicketId(ticketId));
+    }
+
+    private RFIDLink removeLink(RFIDLink link) {
         rfidLinkRepository.delete(link);
+        // Scanners stop accepting the tag right away, and again after commit in case a lookup put it back meanwhile
+        rfidIndex.remove(link.getRfid());
+        afterCommit(() -> {
+            rfidIndex.remove(link.getRfid());
+            liveCounterService.linkedTicketsChanged(-1);
+        });
         return link;
     }
 
@@ -102,7 +164,7 @@ public boolean isTicketLinked(Long ticketId) {
 
     @Override
     public boolean isOwnerLinked(String email) {
-        return rfidLinkRepository.existsRFIDLinkByTicket_Owner_Email(email);
+        return rfidIndex.isOwnerLinked(email) || rfidLinkRepository.existsRFIDLinkByTicket_Owner_Email(email);
     }
 
     private boolean isValidRfid(String rfid) {
@@ -124,4 +186,19 @@ private RFIDLink getLinkByRFID(String rfid) {
     private RFIDLink getLinkByTicketId(Long ticketId) {
         return rfidLinkRepository.findByTicketId(ticketId).orElseThrow(RFIDNotFoundException::new);
     }
+
+    /**
+     * Look up a link in the RFIDIndex, for answering scanners. A hit can be up to one index reload old when the link
+     * was changed on another node. Misses are checked against the database, and links found there are added to the
+     * index once they are known to be committed.
+     */
+    private RFIDLinkEntry getEntryByRFID(String rfid) {
+        Optional<RFIDLinkEntry> indexed = rfidIndex.get(rfid);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+        RFIDLinkEntry entry = rfidLinkRepository.findEntryByRfid(rfid).orElseThrow(RFIDNotFoundException::new);
+        afterCommit(() -> rfidIndex.put(entry));
+        return entry;
+    }
 }
@@ -26,7 +26,7 @@
 import ch.wisv.areafiftylan.products.model.TicketDTO;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.service.OrderService;
-import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.extern.slf4j.Slf4j;
@@ -166,7 +166,7 @@ public ResponseEntity<?> removeFromOrder(@PathVariable Long orderId, @PathVariab
     @PreAuthorize("isAuthenticated() and @currentUserServiceImpl.canAccessOrder(principal, #orderId)")
     @PostMapping("/{orderId}/assign")
     @JsonView(View.OrderOverview.class)
-    public ResponseEntity<?> assignOrderToUser(@AuthenticationPrincipal User user, @PathVariable Long orderId) {
+    public ResponseEntity<?> assignOrderToUser(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long orderId) {
         Order order = orderService.assignOrderToUser(orderId, user.getEmail());
 
         log.info(controllerMarker, "Order {} assigned to {}", order.getId(), user.getId(),
@@ -24,8 +24,9 @@
 import ch.wisv.areafiftylan.products.model.TicketType;
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
-import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
 import net.logstash.logback.marker.Markers;
@@ -49,6 +50,7 @@
 public class TicketRestController {
     private final TicketService ticketService;
     private final OrderService orderService;
+    private final UserService userService;
 
     @Value("${a5l.ticketLimit}")
     private int TICKET_LIMIT;
@@ -56,9 +58,10 @@ public class TicketRestController {
     private Marker controllerMarker = Markers.append("controller", "tickets");
 
     @Autowired
-    public TicketRestController(TicketService ticketService, OrderService orderService) {
+    public TicketRestController(TicketService ticketService, OrderService orderService, UserService userService) {
         this.ticketService = ticketService;
         this.orderService = orderService;
+        this.userService = userService;
     }
 
     @PreAuthorize("@currentUserServiceImpl.isTicketOwner(principal, #ticketId)")
@@ -74,7 +77,7 @@ public ResponseEntity<?> requestTicketTransfer(@PathVariable Long ticketId, @Req
 
     @PreAuthorize("@currentUserServiceImpl.isTicketReceiver(principal, #token)")
     @PutMapping("/transfer")
-    public ResponseEntity<?> transferTicket(@RequestBody String token, @AuthenticationPrincipal User user) {
+    public ResponseEntity<?> transferTicket(@RequestBody String token, @AuthenticationPrincipal AuthenticatedUser user) {
         Ticket ticket = ticketService.transferTicket(token);
 
         log.info(controllerMarker, "Ticket {} transferred to User ID: {}", ticket.getId(), user.getId(),
@@ -97,7 +100,7 @@ public ResponseEntity<?> cancelTicketTransfer(@RequestBody String token) {
 
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/tokens")
-    public ResponseEntity<?> getTicketTokensOpenForTransfer(@AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getTicketTokensOpenForTransfer(@AuthenticationPrincipal AuthenticatedUser user) {
         Collection<TicketTransferToken> tokens = ticketService.getValidTicketTransferTokensByUserEmail(user.getEmail());
 
         return createResponseEntity(HttpStatus.OK, "Ticket transfer tokens successfully retrieved.", tokens);
@@ -115,8 +118,8 @@ public AvailableTicketsDTO getAvailableTickets() {
 
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/teammembers")
-    public Collection<Ticket> getTicketsFromTeamMembers(@AuthenticationPrincipal User user) {
-        return ticketService.getOwnedTicketsAndFromTeamMembers(user);
+    public Collection<Ticket> getTicketsFromTeamMembers(@AuthenticationPrincipal AuthenticatedUser user) {
+        return ticketService.getOwnedTicketsAndFromTeamMembers(userService.getUserById(user.getId()));
     }
 
     @PreAuthorize("hasRole('ADMIN')")
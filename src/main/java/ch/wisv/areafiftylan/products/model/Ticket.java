@@ -19,13 +19,16 @@
 
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -58,6 +61,12 @@ public class Ticket {
     @JsonView(View.OrderOverview.class)
     private boolean valid;
 
+    // Last change, lets an export since a cursor pick up owners that gained or lost a valid ticket
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime updatedAt;
+
     public Ticket(User owner, TicketType type) {
         this(type);
         this.owner = owner;
@@ -84,4 +93,10 @@ public float getPrice() {
 
         return finalPrice;
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -259,7 +259,9 @@ public Ticket assignTicketToUser(Long ticketId, String email) {
         Ticket ticket = getTicketById(ticketId);
         User user = userService.getUserByEmail(email);
         ticket.setOwner(user);
-        return ticketRepository.save(ticket);
+        ticket = ticketRepository.save(ticket);
+        rfidService.ticketOwnerChanged(ticket);
+        return ticket;
     }
 
     @Override
@@ -33,4 +33,6 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     Integer countByType(TicketType type);
 
     Collection<Ticket> findAllByOwnerEmailIgnoreCase(String email);
+
+    Collection<Ticket> findAllByOwnerIdInAndValidTrue(Collection<Long> ownerIds);
 }
@@ -17,18 +17,31 @@
 
 package ch.wisv.areafiftylan.seats.controller;
 
+import ch.wisv.areafiftylan.exception.SeatNotFoundException;
+import ch.wisv.areafiftylan.exception.SeatReservationConflictException;
+import ch.wisv.areafiftylan.exception.SeatUnavailableException;
+import ch.wisv.areafiftylan.seats.model.BulkSeatReservationDTO;
+import ch.wisv.areafiftylan.seats.model.Seat;
 import ch.wisv.areafiftylan.seats.model.SeatGroupDTO;
+import ch.wisv.areafiftylan.seats.model.SeatOccupancy;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
 import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.seats.service.SeatmapEventService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.users.model.Role;
-import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.annotation.JsonView;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
 
 import static ch.wisv.areafiftylan.utils.ResponseEntityBuilder.createResponseEntity;
 
@@ -37,13 +50,16 @@
 public class SeatRestController {
 
     private final SeatService seatService;
+    private final SeatmapEventService seatmapEventService;
 
-    public SeatRestController(SeatService seatService) {
+    public SeatRestController(SeatService seatService, SeatmapEventService seatmapEventService) {
         this.seatService = seatService;
+        this.seatmapEventService = seatmapEventService;
     }
 
     /**
-     * Get all Seats in the Seatmap.
+     * Get all Seats in the Seatmap. The public view is served from a pre-serialized snapshot with an ETag, so clients
+     * polling with If-None-Match get a 304 as long as nothing changed.
      *
      * @param admin Boolean for admins to view full data.
      *
@@ -51,12 +67,51 @@ public SeatRestController(SeatService seatService) {
      */
     @PreAuthorize("isAuthenticated()")
     @GetMapping
-    MappingJacksonValue getAllSeats(@RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal User user) {
-        MappingJacksonValue result = new MappingJacksonValue(seatService.getSeatMap());
-        if (!admin || !user.getAuthorities().contains(Role.ROLE_ADMIN)) {
-            result.setSerializationView(View.Public.class);
+    ResponseEntity<?> getAllSeats(@RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal AuthenticatedUser user) {
+        if (admin && user.getAuthorities().contains(Role.ROLE_ADMIN)) {
+            return ResponseEntity.ok(new MappingJacksonValue(seatService.getSeatMap()));
         }
-        return result;
+
+        SeatmapSnapshot snapshot = seatService.getSeatmapSnapshot();
+        return ResponseEntity.ok().eTag(snapshot.getEtag()).contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getPublicJson());
+    }
+
+    /**
+     * Get which Seats are taken or locked as packed bitmaps per Seat group, with base64 encoded bitmaps. Served from the
+     * seatmap snapshot, so it is a few hundred bytes from memory instead of the full Seatmap.
+     *
+     * @return The occupancy of all Seat groups and the seatmap version it belongs to
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/occupancy", produces = MediaType.APPLICATION_JSON_VALUE)
+    SeatOccupancy getSeatOccupancy() {
+        return seatService.getSeatmapSnapshot().getOccupancy();
+    }
+
+    /**
+     * Get which Seats are taken or locked in the binary encoding described in {@link SeatOccupancy#toBytes()}.
+     *
+     * @return The encoded occupancy of all Seat groups
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/occupancy", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    ResponseEntity<byte[]> getSeatOccupancyBinary() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(seatService.getSeatmapSnapshot().getOccupancy().toBytes());
+    }
+
+    /**
+     * Subscribe to changes of the Seatmap with Server-Sent Events. The first event contains the current version and
+     * ETag of the Seatmap, after that every changed Seat is pushed with its new state. Subscribers that can't keep up
+     * are disconnected and should fetch the Seatmap again.
+     *
+     * @return The event stream
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamSeatmap() {
+        return seatmapEventService.subscribe(seatService.getSeatmapSnapshot());
     }
 
     /**
@@ -68,7 +123,7 @@ MappingJacksonValue getAllSeats(@RequestParam(value = "admin", required = false)
      */
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/{group}")
-    MappingJacksonValue getSeatGroupByName(@PathVariable String group, @RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal User user) {
+    MappingJacksonValue getSeatGroupByName(@PathVariable String group, @RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal AuthenticatedUser user) {
         MappingJacksonValue result = new MappingJacksonValue(seatService.getSeatGroupByName(group));
         if (!admin || !user.getAuthorities().contains(Role.ROLE_ADMIN)) {
             result.setSerializationView(View.Public.class);
@@ -87,7 +142,7 @@ MappingJacksonValue getSeatGroupByName(@PathVariable String group, @RequestParam
      */
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/{group}/{number}")
-    MappingJacksonValue getSeatByGroupAndNumber(@PathVariable String group, @PathVariable int number, @RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal User user) {
+    MappingJacksonValue getSeatByGroupAndNumber(@PathVariable String group, @PathVariable int number, @RequestParam(value = "admin", required = false) boolean admin, @AuthenticationPrincipal AuthenticatedUser user) {
         MappingJacksonValue result = new MappingJacksonValue(seatService.getSeatBySeatGroupAndSeatNumber(group, number));
         if (!admin || !user.getAuthorities().contains(Role.ROLE_ADMIN)) {
             result.setSerializationView(View.Public.class);
@@ -108,7 +163,7 @@ MappingJacksonValue getSeatByGroupAndNumber(@PathVariable String group, @PathVar
     @PreAuthorize("@currentUserServiceImpl.canReserveSeat(principal, #ticketId)")
     @PostMapping("/{group}/{number}/{ticketId}")
     ResponseEntity<?> reserveSingleSeat(@PathVariable String group, @PathVariable Integer number,
-                                        @PathVariable Long ticketId, @AuthenticationPrincipal User user) {
+                                        @PathVariable Long ticketId, @AuthenticationPrincipal AuthenticatedUser user) {
         if (seatService.reserveSeat(group, number, ticketId, user.getAuthorities().contains(Role.ROLE_ADMIN))) {
             return createResponseEntity(HttpStatus.OK, "Seat successfully reserved");
         } else {
@@ -116,6 +171,84 @@ ResponseEntity<?> reserveSingleSeat(@PathVariable String group, @PathVariable In
         }
     }
 
+    /**
+     * Hold a free Seat for a short time during seat selection. Others can't reserve or hold the Seat until the hold is
+     * confirmed by reserving it, released or expired. Holding another Seat releases the previous hold of the Ticket.
+     *
+     * @param group    The Seatgroup the Seat is in.
+     * @param number   The number of the Seat in the Seatgroup.
+     * @param ticketId The ticketId of the User's Ticket.
+     *
+     * @return The hold, including when it expires.
+     */
+    @PreAuthorize("@currentUserServiceImpl.canReserveSeat(principal, #ticketId)")
+    @PostMapping("/{group}/{number}/{ticketId}/hold")
+    ResponseEntity<?> holdSeat(@PathVariable String group, @PathVariable Integer number, @PathVariable Long ticketId) {
+        return createResponseEntity(HttpStatus.OK, "Seat successfully held",
+                seatService.holdSeat(group, number, ticketId));
+    }
+
+    /**
+     * Release the Seat held by a Ticket.
+     *
+     * @param ticketId The ticketId of the User's Ticket.
+     *
+     * @return Status message indicating the result.
+     */
+    @PreAuthorize("@currentUserServiceImpl.canReserveSeat(principal, #ticketId)")
+    @DeleteMapping("/holds/{ticketId}")
+    ResponseEntity<?> releaseSeatHold(@PathVariable Long ticketId) {
+        seatService.releaseSeatHold(ticketId);
+        return createResponseEntity(HttpStatus.OK, "Seat hold successfully released");
+    }
+
+    /**
+     * Reserve multiple Seats at once, for example for a whole Team. The assignments are applied all-or-nothing: if any
+     * of the Seats can't be reserved, nothing changes and the conflicts are returned.
+     *
+     * @param bulkSeatReservationDTO The list of (group, number, ticketId) assignments
+     *
+     * @return Status message indicating the result.
+     */
+    @PreAuthorize("@currentUserServiceImpl.canReserveSeats(principal, #bulkSeatReservationDTO.reservations.![ticketId])")
+    @PostMapping("/reservations")
+    ResponseEntity<?> reserveSeats(@Validated @RequestBody BulkSeatReservationDTO bulkSeatReservationDTO,
+                                   @AuthenticationPrincipal AuthenticatedUser user) {
+        seatService.reserveSeats(bulkSeatReservationDTO.getReservations(),
+                user.getAuthorities().contains(Role.ROLE_ADMIN));
+        return createResponseEntity(HttpStatus.OK, "Seats successfully reserved");
+    }
+
+    /**
+     * Find the best block of adjacent free Seats.
+     *
+     * @param size The number of adjacent Seats needed
+     *
+     * @return The group and first seat number of the block
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping("/blocks")
+    ResponseEntity<?> findAdjacentSeats(@RequestParam("size") int size) {
+        return seatService.findAdjacentSeats(size).
+                map(block -> createResponseEntity(HttpStatus.OK, "Block of adjacent seats found", block)).
+                orElseGet(() -> createResponseEntity(HttpStatus.NOT_FOUND,
+                        "No block of " + size + " adjacent free seats available"));
+    }
+
+    /**
+     * Seat all members of a Team in one block of adjacent Seats. Can be done by the captain of the Team or an Admin.
+     *
+     * @param teamId The id of the Team
+     *
+     * @return The Seats the Team has been seated on
+     */
+    @PreAuthorize("@currentUserServiceImpl.canEditTeam(principal, #teamId)")
+    @PostMapping("/teams/{teamId}")
+    @JsonView(View.Public.class)
+    List<Seat> autoSeatTeam(@PathVariable Long teamId) {
+        return seatService.autoSeatTeam(teamId);
+    }
+
     /**
      * Reserve a seat without assigning a User to it. Can be used for Group reservations. Can only be done by Admins.
      *
@@ -197,4 +330,23 @@ ResponseEntity<?> setSeatLock(@PathVariable String group, @PathVariable int numb
         return createResponseEntity(HttpStatus.OK, lock ? "Seat successfully locked." : "Seat successfully unlocked.");
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleIllegalArgument(IllegalArgumentException e) {
+        return createResponseEntity(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    @ExceptionHandler(SeatNotFoundException.class)
+    public ResponseEntity<?> handleSeatNotFound(SeatNotFoundException e) {
+        return createResponseEntity(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+
+    @ExceptionHandler(SeatUnavailableException.class)
+    public ResponseEntity<?> handleSeatUnavailable(SeatUnavailableException e) {
+        return createResponseEntity(HttpStatus.CONFLICT, e.getMessage());
+    }
+
+    @ExceptionHandler(SeatReservationConflictException.class)
+    public ResponseEntity<?> handleSeatReservationConflict(SeatReservationConflictException e) {
+        return createResponseEntity(HttpStatus.CONFLICT, e.getMessage(), e.getConflicts());
+    }
 }
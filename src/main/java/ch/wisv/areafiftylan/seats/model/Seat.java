@@ -22,22 +22,32 @@
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Data
 @NoArgsConstructor
-@Table(uniqueConstraints = { @UniqueConstraint(name = "seatConstraint", columnNames = { "seatGroup", "seatNumber" }) })
+@Table(uniqueConstraints = { @UniqueConstraint(name = "seatConstraint", columnNames = { "seatGroup", "seatNumber" }),
+        @UniqueConstraint(name = "seatTicketConstraint", columnNames = { "ticket_id" }) })
 public class Seat {
 
     @Id
     @GeneratedValue
     private Long Id;
 
+    // Optimistic locking, so concurrent reservations of the same Seat can't overwrite each other
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @JsonView(View.Public.class)
     private boolean locked = true;
 
@@ -52,6 +62,17 @@ public class Seat {
     @JsonView(View.Public.class)
     public int seatNumber;
 
+    // Held by someone during seat selection, filled in from the SeatHoldRegistry
+    @Transient
+    @JsonView(View.Public.class)
+    private boolean pending;
+
+    // Last change, so an export since a cursor can report seats that were taken or freed
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime updatedAt;
+
     public Seat(String seatGroup, int seatNumber) {
         this.seatGroup = seatGroup;
         this.seatNumber = seatNumber;
@@ -70,4 +91,10 @@ public boolean isTaken() {
     public String toString() {
         return seatGroup + seatNumber;
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Occupancy of a single Seat group as packed bitmaps. Seat n is bit n - 1, counting from the least significant bit of
+ * the first byte, so each bitmap is (seats + 7) / 8 bytes long.
+ */
+@AllArgsConstructor
+@Getter
+public class SeatGroupOccupancy {
+
+    // The highest seat number in the group
+    private final int seats;
+
+    private final byte[] taken;
+
+    private final byte[] locked;
+}
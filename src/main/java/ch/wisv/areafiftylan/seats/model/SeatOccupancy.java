@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact view of which Seats are taken or locked, per Seat group, at a given seatmap version. In JSON the bitmaps are
+ * base64 encoded.
+ */
+@AllArgsConstructor
+@Getter
+public class SeatOccupancy {
+
+    private final long version;
+
+    private final Map<String, SeatGroupOccupancy> seatGroups;
+
+    public static SeatOccupancy of(long version, Map<String, List<Seat>> seatmap) {
+        Map<String, SeatGroupOccupancy> seatGroups = new TreeMap<>();
+        seatmap.forEach((group, seats) -> {
+            int highestSeat = seats.stream().mapToInt(Seat::getSeatNumber).max().orElse(0);
+            BitSet taken = new BitSet(highestSeat);
+            BitSet locked = new BitSet(highestSeat);
+            for (Seat seat : seats) {
+                if (seat.getSeatNumber() < 1) {
+                    continue;
+                }
+                taken.set(seat.getSeatNumber() - 1, seat.isTaken());
+                locked.set(seat.getSeatNumber() - 1, seat.isLocked());
+            }
+            int length = (highestSeat + 7) / 8;
+            // BitSet drops trailing zero bytes, the bitmaps should always cover the whole group
+            seatGroups.put(group, new SeatGroupOccupancy(highestSeat, Arrays.copyOf(taken.toByteArray(), length),
+                    Arrays.copyOf(locked.toByteArray(), length)));
+        });
+        return new SeatOccupancy(version, Collections.unmodifiableMap(seatGroups));
+    }
+
+    /**
+     * Binary encoding, all numbers big-endian: the version (8 bytes), the number of groups (2 bytes), and for every
+     * group the length of its UTF-8 name (2 bytes), the name, the number of seats (2 bytes), the taken bitmap and the
+     * locked bitmap.
+     *
+     * @return The encoded occupancy
+     */
+    @JsonIgnore
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(version);
+            out.writeShort(seatGroups.size());
+            for (Map.Entry<String, SeatGroupOccupancy> group : seatGroups.entrySet()) {
+                byte[] name = group.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeShort(group.getValue().getSeats());
+                out.write(group.getValue().getTaken());
+                out.write(group.getValue().getLocked());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Describes why a single assignment of a bulk seat reservation could not be made.
+ */
+@AllArgsConstructor
+@Getter
+public class SeatReservationConflict {
+
+    private final String seatGroup;
+
+    private final Integer seatNumber;
+
+    private final Long ticketId;
+
+    private final String reason;
+}
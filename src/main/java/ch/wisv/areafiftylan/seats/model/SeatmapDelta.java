@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A single change to the public seatmap, pushed to clients subscribed to the seatmap stream.
+ */
+@AllArgsConstructor
+@Getter
+public class SeatmapDelta {
+
+    private final long version;
+
+    private final String seatGroup;
+
+    private final int seatNumber;
+
+    private final boolean taken;
+
+    private final boolean locked;
+
+    private final boolean pending;
+
+    private final String displayName;
+
+    public static SeatmapDelta of(long version, Seat seat) {
+        String displayName = null;
+        if (seat.isTaken() && seat.getTicket().getOwner() != null) {
+            displayName = seat.getTicket().getOwner().getProfile().getDisplayName();
+        }
+        return new SeatmapDelta(version, seat.getSeatGroup(), seat.getSeatNumber(), seat.isTaken(), seat.isLocked(),
+                seat.isPending(), displayName);
+    }
+}
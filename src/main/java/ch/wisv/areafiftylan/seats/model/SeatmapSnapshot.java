@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Immutable snapshot of the public view of the seatmap. The JSON and the occupancy bitmaps are built once per version,
+ * so they can be served to every client polling the seatmap without touching the database.
+ */
+@AllArgsConstructor
+@Getter
+public class SeatmapSnapshot {
+
+    private final long version;
+
+    private final String etag;
+
+    private final long createdAt;
+
+    private final byte[] publicJson;
+
+    private final SeatOccupancy occupancy;
+}
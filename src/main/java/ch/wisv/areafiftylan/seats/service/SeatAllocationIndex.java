@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.SeatBlock;
+
+import java.util.*;
+
+/**
+ * Immutable index of the free Seats per Seat group, stored as a bitset indexed by seat number. It is built once per
+ * seatmap version and answers block queries without touching the database.
+ */
+class SeatAllocationIndex {
+
+    private final long version;
+
+    // Set bits are seats that are not taken, locked or held
+    private final Map<String, BitSet> freeSeats;
+
+    private final Map<Long, String> ticketSeatGroups;
+
+    private final Map<Long, Integer> ticketSeatNumbers;
+
+    private SeatAllocationIndex(long version, Map<String, BitSet> freeSeats, Map<Long, String> ticketSeatGroups,
+                                Map<Long, Integer> ticketSeatNumbers) {
+        this.version = version;
+        this.freeSeats = freeSeats;
+        this.ticketSeatGroups = ticketSeatGroups;
+        this.ticketSeatNumbers = ticketSeatNumbers;
+    }
+
+    static SeatAllocationIndex of(long version, Collection<Seat> seats) {
+        // Sorted, so equally good blocks are always picked from the same group
+        Map<String, BitSet> freeSeats = new TreeMap<>();
+        Map<Long, String> ticketSeatGroups = new HashMap<>();
+        Map<Long, Integer> ticketSeatNumbers = new HashMap<>();
+
+        for (Seat seat : seats) {
+            BitSet free = freeSeats.computeIfAbsent(seat.getSeatGroup(), group -> new BitSet());
+            if (seat.isTaken()) {
+                ticketSeatGroups.put(seat.getTicket().getId(), seat.getSeatGroup());
+                ticketSeatNumbers.put(seat.getTicket().getId(), seat.getSeatNumber());
+            } else if (!seat.isLocked() && !seat.isPending()) {
+                free.set(seat.getSeatNumber());
+            }
+        }
+
+        return new SeatAllocationIndex(version, freeSeats, ticketSeatGroups, ticketSeatNumbers);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Find the best block of adjacent free seats. The seats of the given tickets count as free, as those tickets are
+     * about to be moved. If any of them are already seated, the block closest to them is preferred. Otherwise the
+     * smallest free stretch that fits is used, to keep larger stretches available for larger teams.
+     *
+     * @param size      The number of adjacent seats needed
+     * @param ticketIds Tickets that are being seated in the block
+     *
+     * @return The best block, or empty if there is no stretch of free seats large enough
+     */
+    Optional<SeatBlock> findBlock(int size, Collection<Long> ticketIds) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Block size should be at least 1");
+        }
+
+        SeatBlock best = null;
+        long bestScore = Long.MAX_VALUE;
+
+        for (Map.Entry<String, BitSet> group : freeSeats.entrySet()) {
+            BitSet available = (BitSet) group.getValue().clone();
+            List<Integer> anchors = new ArrayList<>();
+            for (Long ticketId : ticketIds) {
+                if (group.getKey().equals(ticketSeatGroups.get(ticketId))) {
+                    int seatNumber = ticketSeatNumbers.get(ticketId);
+                    available.set(seatNumber);
+                    anchors.add(seatNumber);
+                }
+            }
+            Collections.sort(anchors);
+
+            for (int start = available.nextSetBit(0); start >= 0; start = available.nextSetBit(start + 1)) {
+                int end = available.nextClearBit(start);
+                if (end - start >= size) {
+                    int blockStart;
+                    long score;
+                    if (anchors.isEmpty()) {
+                        blockStart = start;
+                        // Groups without seated team members come after the ones that do have them
+                        score = (1L << 32) + (end - start - size);
+                    } else {
+                        int median = anchors.get(anchors.size() / 2);
+                        blockStart = Math.max(start, Math.min(end - size, median - size / 2));
+                        score = Math.abs(blockStart + size / 2 - median);
+                    }
+                    if (score < bestScore) {
+                        bestScore = score;
+                        best = new SeatBlock(group.getKey(), blockStart, size);
+                    }
+                }
+                start = end;
+            }
+        }
+
+        return Optional.ofNullable(best);
+    }
+}
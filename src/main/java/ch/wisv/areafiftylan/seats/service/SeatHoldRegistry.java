@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.SeatHold;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory registry of the Seats that are held during seat selection. A ticket holds at most one Seat at a time and a
+ * Seat is held by at most one ticket. Expired holds are ignored right away and removed by a periodic sweep.
+ */
+@Component
+public class SeatHoldRegistry {
+
+    @Value("${a5l.seats.holdSeconds:60}")
+    private long HOLD_SECONDS;
+
+    private final Map<String, SeatHold> holdsBySeat = new HashMap<>();
+    private final Map<Long, SeatHold> holdsByTicket = new HashMap<>();
+
+    /**
+     * Hold a Seat for a ticket, releasing any other Seat the ticket held. Holding a Seat the ticket already holds
+     * extends the hold.
+     *
+     * @return The new hold, or empty if the Seat is held by another ticket
+     */
+    public synchronized Optional<SeatHold> hold(String seatGroup, int seatNumber, Long ticketId) {
+        long now = System.currentTimeMillis();
+        SeatHold current = holdsBySeat.get(seatKey(seatGroup, seatNumber));
+        if (current != null && !current.isExpired(now) && !current.getTicketId().equals(ticketId)) {
+            return Optional.empty();
+        }
+
+        remove(holdsByTicket.get(ticketId));
+        remove(current);
+        SeatHold hold = new SeatHold(seatGroup, seatNumber, ticketId, now + TimeUnit.SECONDS.toMillis(HOLD_SECONDS));
+        holdsBySeat.put(seatKey(seatGroup, seatNumber), hold);
+        holdsByTicket.put(ticketId, hold);
+        return Optional.of(hold);
+    }
+
+    public synchronized Optional<SeatHold> getHold(Long ticketId) {
+        SeatHold hold = holdsByTicket.get(ticketId);
+        if (hold == null || hold.isExpired(System.currentTimeMillis())) {
+            return Optional.empty();
+        }
+        return Optional.of(hold);
+    }
+
+    public synchronized boolean isHeld(String seatGroup, int seatNumber) {
+        SeatHold hold = holdsBySeat.get(seatKey(seatGroup, seatNumber));
+        return hold != null && !hold.isExpired(System.currentTimeMillis());
+    }
+
+    public synchronized boolean isHeldByOther(String seatGroup, int seatNumber, Long ticketId) {
+        SeatHold hold = holdsBySeat.get(seatKey(seatGroup, seatNumber));
+        return hold != null && !hold.isExpired(System.currentTimeMillis()) && !hold.getTicketId().equals(ticketId);
+    }
+
+    /**
+     * Release the hold of a ticket.
+     *
+     * @return The released hold, or empty if the ticket didn't hold a Seat
+     */
+    public synchronized Optional<SeatHold> release(Long ticketId) {
+        SeatHold hold = holdsByTicket.get(ticketId);
+        remove(hold);
+        return Optional.ofNullable(hold);
+    }
+
+    /**
+     * Remove all expired holds.
+     *
+     * @return The removed holds
+     */
+    public synchronized List<SeatHold> expire() {
+        long now = System.currentTimeMillis();
+        List<SeatHold> expired = new ArrayList<>();
+        for (SeatHold hold : holdsBySeat.values()) {
+            if (hold.isExpired(now)) {
+                expired.add(hold);
+            }
+        }
+        expired.forEach(this::remove);
+        return expired;
+    }
+
+    private void remove(SeatHold hold) {
+        if (hold != null) {
+            holdsBySeat.remove(seatKey(hold.getSeatGroup(), hold.getSeatNumber()), hold);
+            holdsByTicket.remove(hold.getTicketId(), hold);
+        }
+    }
+
+    private static String seatKey(String seatGroup, int seatNumber) {
+        return seatGroup + ":" + seatNumber;
+    }
+}
@@ -18,11 +18,20 @@
 package ch.wisv.areafiftylan.seats.service;
 
 import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.SeatExportRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SeatRepository extends JpaRepository<Seat, Long> {
@@ -30,9 +39,45 @@ public interface SeatRepository extends JpaRepository<Seat, Long> {
 
     List<Seat> findBySeatGroup(String seatGroup);
 
+    @Query("select s from Seat s join fetch s.ticket t join fetch t.owner o where o.id in " +
+            "(select m.id from Team team join team.members m where lower(team.teamName) = lower(:teamName))")
+    List<Seat> findByTeamName(@Param("teamName") String teamName);
+
+    List<Seat> findBySeatGroupIn(Collection<String> seatGroups);
+
+    List<Seat> findBySeatGroupOrderBySeatNumberDesc(String seatGroup);
+
     Optional<Seat> findBySeatGroupAndSeatNumber(String seatGroup, int seatNumber);
 
     Optional<Seat> findByTicketId(Long ticketId);
 
+    List<Seat> findByTicketIdIn(Collection<Long> ticketIds);
+
     Optional<Seat> findFirstBySeatGroupOrderBySeatNumberDesc(String seatGroup);
+
+    // Bulk updates bypass the optimistic lock, so the version is bumped by hand to fail concurrent reservations
+    @Modifying(clearAutomatically = true)
+    @Query("update Seat s set s.locked = :locked, s.version = s.version + 1 where s.locked <> :locked")
+    int updateAllLocked(@Param("locked") boolean locked);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Seat s set s.locked = :locked, s.version = s.version + 1 " +
+            "where s.seatGroup = :seatGroup and s.locked <> :locked")
+    int updateSeatGroupLocked(@Param("seatGroup") String seatGroup, @Param("locked") boolean locked);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id as userId, s.seatGroup as seatGroup, s.seatNumber as seatNumber " +
+            "from Seat s join s.ticket t join t.owner o order by o.id, s.id")
+    Stream<SeatExportRow> streamExportSeats();
+
+    // The change stamps are read one table at a time, so each query is a range scan on its updated_at index
+    @Query("select s.id from Seat s where s.updatedAt > :since")
+    List<Long> findIdsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select s.id from Seat s join s.ticket t where t.updatedAt > :since")
+    List<Long> findIdsWithTicketUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select o.id as userId, s.seatGroup as seatGroup, s.seatNumber as seatNumber " +
+            "from Seat s left join s.ticket t left join t.owner o where s.id in :seatIds order by s.id")
+    List<SeatExportRow> findExportSeatsByIdIn(@Param("seatIds") Collection<Long> seatIds);
 }
@@ -18,15 +18,28 @@
 package ch.wisv.areafiftylan.seats.service;
 
 import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.SeatBlock;
 import ch.wisv.areafiftylan.seats.model.SeatGroupDTO;
+import ch.wisv.areafiftylan.seats.model.SeatHold;
+import ch.wisv.areafiftylan.seats.model.SeatReservationDTO;
 import ch.wisv.areafiftylan.seats.model.SeatmapResponse;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface SeatService {
 
     SeatmapResponse getSeatMap();
 
+    /**
+     * Get the current public seatmap snapshot. The snapshot is rebuilt lazily after any seat mutation, or when it gets
+     * older than the configured maximum age, so changes to tickets or profiles made elsewhere eventually show up too.
+     *
+     * @return The current SeatmapSnapshot
+     */
+    SeatmapSnapshot getSeatmapSnapshot();
+
     List<Seat> getAllSeats();
 
     List<Seat> getSeatsByEmail(String email);
@@ -39,6 +52,46 @@ public interface SeatService {
 
     boolean reserveSeat(String groupName, int seatNumber, Long ticketId, boolean allowSeatOverride);
 
+    void reserveSeats(List<SeatReservationDTO> reservations, boolean allowSeatOverride);
+
+    /**
+     * Hold a free Seat for a ticket for a short time, so its owner can confirm the reservation without racing others
+     * for it. A ticket holds at most one Seat, holding another Seat releases the previous one.
+     *
+     * @param groupName  The group of the Seat
+     * @param seatNumber The number of the Seat
+     * @param ticketId   The ticket to hold the Seat for
+     *
+     * @return The hold, including when it expires
+     */
+    SeatHold holdSeat(String groupName, int seatNumber, Long ticketId);
+
+    void releaseSeatHold(Long ticketId);
+
+    /**
+     * Remove expired Seat holds and tell seatmap subscribers those Seats are no longer pending.
+     */
+    void expireSeatHolds();
+
+    /**
+     * Find the best block of adjacent free Seats.
+     *
+     * @param size The number of adjacent Seats needed
+     *
+     * @return The block, or empty if no group has enough adjacent free Seats
+     */
+    Optional<SeatBlock> findAdjacentSeats(int size);
+
+    /**
+     * Seat all members of a Team with a valid ticket in one block of adjacent Seats, as close as possible to where
+     * members are already seated.
+     *
+     * @param teamId The id of the Team
+     *
+     * @return The Seats the Team has been seated on
+     */
+    List<Seat> autoSeatTeam(Long teamId);
+
     void clearSeat(String groupName, int seatNumber);
 
     void addSeats(SeatGroupDTO seatGroupDTO);
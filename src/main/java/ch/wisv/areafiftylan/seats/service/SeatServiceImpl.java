@@ -19,46 +19,170 @@
 
 import ch.wisv.areafiftylan.exception.InvalidTicketException;
 import ch.wisv.areafiftylan.exception.SeatNotFoundException;
+import ch.wisv.areafiftylan.exception.SeatReservationConflictException;
+import ch.wisv.areafiftylan.exception.SeatUnavailableException;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.SeatBlock;
 import ch.wisv.areafiftylan.seats.model.SeatGroupDTO;
+import ch.wisv.areafiftylan.seats.model.SeatHold;
+import ch.wisv.areafiftylan.seats.model.SeatOccupancy;
+import ch.wisv.areafiftylan.seats.model.SeatReservationConflict;
+import ch.wisv.areafiftylan.seats.model.SeatReservationDTO;
+import ch.wisv.areafiftylan.seats.model.SeatmapDelta;
 import ch.wisv.areafiftylan.seats.model.SeatmapResponse;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.utils.mail.MailService;
-import lombok.Synchronized;
+import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static ch.wisv.areafiftylan.utils.TransactionHooks.afterCommit;
+
 @Service
+@Slf4j
 public class SeatServiceImpl implements SeatService {
 
     private final SeatRepository seatRepository;
     private final TeamService teamService;
     private final TicketService ticketService;
+    private final TicketRepository ticketRepository;
     private final MailService mailService;
+    private final SeatmapEventService seatmapEventService;
+    private final SeatHoldRegistry seatHoldRegistry;
+    private final TeamSeatCache teamSeatCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    // Fixed path segments under /seats, a group with one of these names would be shadowed by those endpoints
+    private static final Set<String> RESERVED_SEAT_GROUP_NAMES =
+            ImmutableSet.of("lock", "reservations", "blocks", "teams", "holds", "occupancy", "stream");
+
+    // Same defaults as the MVC ObjectMapper, so fields without a JsonView are excluded from the public view
+    private final ObjectWriter publicSeatmapWriter =
+            Jackson2ObjectMapperBuilder.json().build().writerWithView(View.Public.class);
+    private final AtomicLong seatmapVersion = new AtomicLong();
+    private volatile SeatmapSnapshot seatmapSnapshot;
+    private volatile SeatAllocationIndex allocationIndex;
+
+    @Value("${a5l.seats.snapshotMaxAge:30}")
+    private long SNAPSHOT_MAX_AGE_SECONDS;
 
     @Autowired
     public SeatServiceImpl(SeatRepository seatRepository, TeamService teamService, TicketService ticketService,
-                           MailService mailService) {
+                           TicketRepository ticketRepository, MailService mailService,
+                           SeatmapEventService seatmapEventService, SeatHoldRegistry seatHoldRegistry,
+                           TeamSeatCache teamSeatCache, PlatformTransactionManager transactionManager) {
         this.seatRepository = seatRepository;
         this.teamService = teamService;
         this.ticketService = ticketService;
+        this.ticketRepository = ticketRepository;
         this.mailService = mailService;
+        this.seatmapEventService = seatmapEventService;
+        this.seatHoldRegistry = seatHoldRegistry;
+        this.teamSeatCache = teamSeatCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     public SeatmapResponse getSeatMap() {
-        return new SeatmapResponse(seatRepository.findAll().
+        return new SeatmapResponse(markPending(seatRepository.findAll()).
                 stream().
                 collect(Collectors.groupingBy(Seat::getSeatGroup)));
     }
 
+    private List<Seat> markPending(List<Seat> seats) {
+        seats.forEach(seat -> seat.setPending(seatHoldRegistry.isHeld(seat.getSeatGroup(), seat.getSeatNumber())));
+        return seats;
+    }
+
+    @Override
+    public SeatmapSnapshot getSeatmapSnapshot() {
+        SeatmapSnapshot snapshot = seatmapSnapshot;
+        if (isSnapshotCurrent(snapshot)) {
+            return snapshot;
+        }
+        return rebuildSeatmapSnapshot();
+    }
+
+    private boolean isSnapshotCurrent(SeatmapSnapshot snapshot) {
+        return snapshot != null && snapshot.getVersion() == seatmapVersion.get() &&
+                System.currentTimeMillis() - snapshot.getCreatedAt() < TimeUnit.SECONDS.toMillis(SNAPSHOT_MAX_AGE_SECONDS);
+    }
+
+    private synchronized SeatmapSnapshot rebuildSeatmapSnapshot() {
+        // Another thread might have rebuilt the snapshot while we were waiting
+        if (isSnapshotCurrent(seatmapSnapshot)) {
+            return seatmapSnapshot;
+        }
+
+        // Read the version before the seats, so a concurrent change always results in another rebuild
+        long version = seatmapVersion.get();
+        try {
+            SeatmapResponse seatmap = getSeatMap();
+            byte[] publicJson = publicSeatmapWriter.writeValueAsBytes(seatmap);
+            // Derived from the bytes, as a rebuild after the max age can pick up changes that didn't bump the version
+            String etag = "\"" + Hashing.murmur3_128().hashBytes(publicJson) + "\"";
+            seatmapSnapshot = new SeatmapSnapshot(version, etag, System.currentTimeMillis(), publicJson,
+                    SeatOccupancy.of(version, seatmap.getSeatmap()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize the seatmap", e);
+        }
+        return seatmapSnapshot;
+    }
+
+    /**
+     * Mark the seatmap as changed and push the new state of the changed seats to subscribers. Should be called after a
+     * seat mutation has been written to the database.
+     *
+     * @param changedSeats The seats of which the ticket or lock changed
+     */
+    private void seatmapChanged(Collection<Seat> changedSeats) {
+        long version = seatmapVersion.incrementAndGet();
+        if (!changedSeats.isEmpty()) {
+            // A seat can be in here twice, for example when it was held and then reserved
+            Map<Long, Seat> seats = new LinkedHashMap<>();
+            changedSeats.forEach(seat -> seats.putIfAbsent(seat.getId(), seat));
+            seats.values().forEach(seat ->
+                    seat.setPending(seatHoldRegistry.isHeld(seat.getSeatGroup(), seat.getSeatNumber())));
+            seatmapEventService.publish(seats.values().stream().
+                    map(seat -> SeatmapDelta.of(version, seat)).
+                    collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Mark the seatmap as changed when seats have been added or removed, or changed in bulk. Subscribers can't patch
+     * that in, so they are told to reload the seatmap instead.
+     */
+    private void seatmapStructureChanged() {
+        seatmapEventService.publishReload(seatmapVersion.incrementAndGet());
+    }
+
     @Override
     public List<Seat> getAllSeats() {
         return seatRepository.findAll();
@@ -70,20 +194,28 @@ public List<Seat> getSeatsByEmail(String email) {
 
     }
 
+    /**
+     * Get the Seats of all members of a Team with a single query. The result is cached until any Seat or the members
+     * of the Team change.
+     */
     @Override
     public List<Seat> getSeatsByTeamName(String teamName) {
-        Team team = teamService.getTeamByTeamname(teamName);
-
-        return team.getMembers().stream().
-                map(User::getEmail).
-                map(seatRepository::findByTicketOwnerEmailIgnoreCase).
-                flatMap(Collection::stream).
-                collect(Collectors.toList());
+        // Read the version before the seats, so a concurrent change never gets cached under the new version
+        long version = seatmapVersion.get();
+        return teamSeatCache.get(teamName, version).orElseGet(() -> {
+            List<Seat> seats = seatRepository.findByTeamName(teamName);
+            if (seats.isEmpty()) {
+                // Only look up the Team itself to tell an unknown Team apart from one without Seats
+                teamService.getTeamByTeamname(teamName);
+            }
+            teamSeatCache.put(teamName, version, seats);
+            return seats;
+        });
     }
 
     @Override
     public SeatmapResponse getSeatGroupByName(String groupName) {
-        List<Seat> seatGroup = seatRepository.findBySeatGroup(groupName);
+        List<Seat> seatGroup = markPending(seatRepository.findBySeatGroup(groupName));
         if (seatGroup.size() == 0) {
             throw new SeatNotFoundException("SeatGroup " + groupName + " not found!");
         }
@@ -96,93 +228,399 @@ public SeatmapResponse getSeatGroupByName(String groupName) {
 
     @Override
     public Seat getSeatBySeatGroupAndSeatNumber(String groupName, int seatNumber) {
-        return seatRepository.findBySeatGroupAndSeatNumber(groupName, seatNumber)
+        Seat seat = seatRepository.findBySeatGroupAndSeatNumber(groupName, seatNumber)
                 .orElseThrow(SeatNotFoundException::new);
+        seat.setPending(seatHoldRegistry.isHeld(groupName, seatNumber));
+        return seat;
     }
 
+    /**
+     * Reserve a Seat. Every reservation runs in its own transaction, guarded by the version of the Seat and the unique
+     * ticket constraint instead of a global lock, so reservations of different Seats don't wait for each other. When
+     * two reservations collide, the losing one is retried against the fresh state of the Seat.
+     * <p>
+     * The seat override mail and the seatmap update are only sent after the reservation has been committed.
+     */
     @Override
-    @Synchronized
     public boolean reserveSeat(String groupName, int seatNumber, Long ticketId, boolean allowSeatOverride) {
+        // Seats held by someone else are turned down before starting a transaction
+        if (!allowSeatOverride && seatHoldRegistry.isHeldByOther(groupName, seatNumber, ticketId)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(
+                executeWithRetry(status -> doReserveSeat(groupName, seatNumber, ticketId, allowSeatOverride)));
+    }
+
+    /**
+     * Run a reservation in its own transaction. When it collides with a concurrent reservation, it is retried against
+     * the fresh state of the Seats.
+     */
+    private <T> T executeWithRetry(TransactionCallback<T> reservation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(reservation);
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                if (attempt >= MAX_RESERVE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Concurrent seat reservation, retrying (attempt {})", attempt);
+            }
+        }
+    }
+
+    private boolean doReserveSeat(String groupName, int seatNumber, Long ticketId, boolean allowSeatOverride) {
         Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
         Ticket ticket = null;
+        List<Seat> changedSeats = new ArrayList<>(2);
 
-        if (!allowSeatOverride && (seat.isTaken() || seat.isLocked() || ticketId == null)) {
+        if (!allowSeatOverride && (seat.isTaken() || seat.isLocked() || ticketId == null ||
+                seatHoldRegistry.isHeldByOther(groupName, seatNumber, ticketId))) {
             return false;
         }
 
         if (seat.isTaken() && seat.getTicket().getOwner() != null) {
-            mailService.sendSeatOverrideMail(seat.getTicket().getOwner());
+            User previousOwner = seat.getTicket().getOwner();
+            mailService.sendSeatOverrideMail(previousOwner);
         }
         if (ticketId != null) {
-            seatRepository.findByTicketId(ticketId).ifPresent(previousSeat -> previousSeat.setTicket(null));
             ticket = ticketService.getTicketById(ticketId);
             if (!ticket.isValid()) {
                 throw new InvalidTicketException("Unable to reserve seat for an invalid Ticket");
             }
+            // Free the previous Seat first, the ticket can only be on one Seat at a time
+            seatRepository.findByTicketId(ticketId).
+                    filter(previousSeat -> !previousSeat.getId().equals(seat.getId())).
+                    ifPresent(previousSeat -> {
+                        previousSeat.setTicket(null);
+                        seatRepository.saveAndFlush(previousSeat);
+                        changedSeats.add(previousSeat);
+                    });
         }
         seat.setTicket(ticket);
         seatRepository.saveAndFlush(seat);
+        changedSeats.add(seat);
+        afterCommit(() -> {
+            if (ticketId != null) {
+                changedSeats.addAll(releaseHolds(Collections.singleton(ticketId)));
+            }
+            seatmapChanged(changedSeats);
+        });
         return true;
     }
 
+    /**
+     * Reserve a set of Seats at once. Seats and tickets are looked up in batches, every assignment is checked before
+     * anything is written and the assignments are applied in a single transaction, so either all of them succeed or
+     * none of them do.
+     *
+     * @throws SeatReservationConflictException With a conflict for every assignment that can't be made
+     */
     @Override
-    public void clearSeat(String groupName, int seatNumber) {
-        reserveSeat(groupName, seatNumber, null, true);
+    public void reserveSeats(List<SeatReservationDTO> reservations, boolean allowSeatOverride) {
+        executeWithRetry(status -> {
+            doReserveSeats(reservations, allowSeatOverride);
+            return null;
+        });
+    }
+
+    private void doReserveSeats(List<SeatReservationDTO> reservations, boolean allowSeatOverride) {
+        Set<String> seatGroups =
+                reservations.stream().map(SeatReservationDTO::getSeatGroup).collect(Collectors.toSet());
+        Map<String, Seat> seats = seatRepository.findBySeatGroupIn(seatGroups).stream().
+                collect(Collectors.toMap(seat -> seatKey(seat.getSeatGroup(), seat.getSeatNumber()),
+                        Function.identity()));
+
+        Set<Long> ticketIds = reservations.stream().map(SeatReservationDTO::getTicketId).collect(Collectors.toSet());
+        Map<Long, Ticket> tickets = ticketRepository.findAllById(ticketIds).stream().
+                collect(Collectors.toMap(Ticket::getId, Function.identity()));
+
+        // Check every assignment before changing anything
+        List<SeatReservationConflict> conflicts = new ArrayList<>();
+        Set<String> requestedSeats = new HashSet<>();
+        Set<Long> requestedTickets = new HashSet<>();
+        for (SeatReservationDTO reservation : reservations) {
+            String key = seatKey(reservation.getSeatGroup(), reservation.getSeatNumber());
+            Seat seat = seats.get(key);
+            Ticket ticket = tickets.get(reservation.getTicketId());
+
+            String reason = null;
+            if (!requestedSeats.add(key)) {
+                reason = "Seat is requested more than once";
+            } else if (!requestedTickets.add(reservation.getTicketId())) {
+                reason = "Ticket is assigned to more than one seat";
+            } else if (seat == null) {
+                reason = "Seat not found";
+            } else if (ticket == null) {
+                reason = "Ticket not found";
+            } else if (!ticket.isValid()) {
+                reason = "Ticket is not valid";
+            } else if (!allowSeatOverride && seat.isLocked()) {
+                reason = "Seat is locked";
+            } else if (!allowSeatOverride && seat.isTaken() && !ticketIds.contains(seat.getTicket().getId())) {
+                // Seats taken by tickets in this request are fine, those tickets move to their new Seat
+                reason = "Seat is already taken";
+            } else if (!allowSeatOverride && seatHoldRegistry.isHeldByOther(reservation.getSeatGroup(),
+                    reservation.getSeatNumber(), reservation.getTicketId())) {
+                reason = "Seat is held by someone else";
+            }
+
+            if (reason != null) {
+                conflicts.add(new SeatReservationConflict(reservation.getSeatGroup(), reservation.getSeatNumber(),
+                        reservation.getTicketId(), reason));
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new SeatReservationConflictException(conflicts);
+        }
+
+        List<Seat> targetSeats = reservations.stream().
+                map(reservation -> seats.get(seatKey(reservation.getSeatGroup(), reservation.getSeatNumber()))).
+                collect(Collectors.toList());
+        Set<Long> targetSeatIds = targetSeats.stream().map(Seat::getId).collect(Collectors.toSet());
+
+        // Free the current Seats of the tickets and the target Seats first, so the unique ticket constraint holds
+        List<Seat> changedSeats = new ArrayList<>();
+        for (Seat previousSeat : seatRepository.findByTicketIdIn(ticketIds)) {
+            if (!targetSeatIds.contains(previousSeat.getId())) {
+                previousSeat.setTicket(null);
+                changedSeats.add(previousSeat);
+            }
+        }
+        Map<Long, User> displacedOwners = new HashMap<>();
+        for (Seat seat : targetSeats) {
+            if (seat.isTaken() && !ticketIds.contains(seat.getTicket().getId()) &&
+                    seat.getTicket().getOwner() != null) {
+                User owner = seat.getTicket().getOwner();
+                displacedOwners.put(owner.getId(), owner);
+            }
+            seat.setTicket(null);
+        }
+        seatRepository.saveAll(changedSeats);
+        seatRepository.saveAll(targetSeats);
+        seatRepository.flush();
+
+        for (int i = 0; i < reservations.size(); i++) {
+            targetSeats.get(i).setTicket(tickets.get(reservations.get(i).getTicketId()));
+        }
+        seatRepository.saveAll(targetSeats);
+        seatRepository.flush();
+
+        changedSeats.addAll(targetSeats);
+        afterCommit(() -> {
+            displacedOwners.values().forEach(mailService::sendSeatOverrideMail);
+            changedSeats.addAll(releaseHolds(ticketIds));
+            seatmapChanged(changedSeats);
+        });
     }
 
     @Override
-    public void addSeats(SeatGroupDTO seatGroupDTO) {
-        int highestSeat=  0;
+    public SeatHold holdSeat(String groupName, int seatNumber, Long ticketId) {
+        Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
+        if (seat.isTaken() || seat.isLocked()) {
+            throw new SeatUnavailableException("Seat " + seat + " is not available");
+        }
+        if (!ticketService.getTicketById(ticketId).isValid()) {
+            throw new InvalidTicketException("Unable to hold seat for an invalid Ticket");
+        }
+
+        Optional<SeatHold> previousHold = seatHoldRegistry.getHold(ticketId);
+        SeatHold hold = seatHoldRegistry.hold(groupName, seatNumber, ticketId).
+                orElseThrow(() -> new SeatUnavailableException("Seat " + seat + " is held by someone else"));
+
+        List<Seat> changedSeats = new ArrayList<>(2);
+        changedSeats.add(seat);
+        previousHold.filter(previous -> !previous.getSeatGroup().equals(groupName) ||
+                previous.getSeatNumber() != seatNumber).
+                ifPresent(previous -> changedSeats.addAll(getSeats(Collections.singletonList(previous))));
+        seatmapChanged(changedSeats);
+        return hold;
+    }
 
-        Optional<Seat> seat = seatRepository.findFirstBySeatGroupOrderBySeatNumberDesc(seatGroupDTO.getSeatGroupName());
-        if (seat.isPresent()) {
-            highestSeat = seat.get().seatNumber;
+    @Override
+    public void releaseSeatHold(Long ticketId) {
+        List<Seat> releasedSeats = releaseHolds(Collections.singleton(ticketId));
+        if (!releasedSeats.isEmpty()) {
+            seatmapChanged(releasedSeats);
         }
+    }
+
+    @Override
+    public void expireSeatHolds() {
+        List<SeatHold> expiredHolds = seatHoldRegistry.expire();
+        if (!expiredHolds.isEmpty()) {
+            log.debug("Expired {} seat holds", expiredHolds.size());
+            seatmapChanged(getSeats(expiredHolds));
+        }
+    }
 
-        List<Seat> seatList = new ArrayList<>(seatGroupDTO.getNumberOfSeats());
+    /**
+     * Release the holds of the given tickets.
+     *
+     * @return The Seats that were held
+     */
+    private List<Seat> releaseHolds(Collection<Long> ticketIds) {
+        List<SeatHold> releasedHolds = ticketIds.stream().
+                map(seatHoldRegistry::release).
+                flatMap(Optional::stream).
+                collect(Collectors.toList());
+        return getSeats(releasedHolds);
+    }
 
-        for (int i = 1 + highestSeat; i <= seatGroupDTO.getNumberOfSeats() + highestSeat; i++) {
-            seatList.add(new Seat(seatGroupDTO.getSeatGroupName(), i));
+    private List<Seat> getSeats(Collection<SeatHold> holds) {
+        return holds.stream().
+                map(hold -> seatRepository.findBySeatGroupAndSeatNumber(hold.getSeatGroup(), hold.getSeatNumber())).
+                flatMap(Optional::stream).
+                collect(Collectors.toList());
+    }
+
+    private SeatAllocationIndex getAllocationIndex() {
+        SeatAllocationIndex index = allocationIndex;
+        long version = seatmapVersion.get();
+        if (index == null || index.getVersion() != version) {
+            index = SeatAllocationIndex.of(version, markPending(seatRepository.findAll()));
+            allocationIndex = index;
         }
-        seatRepository.saveAll(seatList);
+        return index;
     }
 
     @Override
-    public void removeSeats(SeatGroupDTO seatGroupDTO) {
-        String seatGroupName = seatGroupDTO.getSeatGroupName();
-        int seatsInSeatGroup = getSeatGroupByName(seatGroupName).getSeatmap().get(seatGroupName).size();
-        int seatsToRemove = seatGroupDTO.getNumberOfSeats();
-        if (seatsToRemove < 0) {
-            throw new IllegalArgumentException("Number of seats needs to be higher than 1");
+    public Optional<SeatBlock> findAdjacentSeats(int size) {
+        return getAllocationIndex().findBlock(size, Collections.emptySet());
+    }
+
+    @Override
+    public List<Seat> autoSeatTeam(Long teamId) {
+        Team team = teamService.getTeamById(teamId);
+        Set<Long> memberIds = team.getMembers().stream().map(User::getId).collect(Collectors.toSet());
+
+        // Seat one valid ticket per member, in a stable order
+        List<Ticket> tickets = new ArrayList<>(ticketRepository.findAllByOwnerIdInAndValidTrue(memberIds).stream().
+                collect(Collectors.toMap(ticket -> ticket.getOwner().getId(), Function.identity(),
+                        (first, second) -> first.getId() < second.getId() ? first : second)).
+                values());
+        if (tickets.isEmpty()) {
+            throw new IllegalStateException("None of the members of team " + team.getTeamName() + " have a valid ticket");
+        }
+        tickets.sort(Comparator.comparing(Ticket::getId));
+        List<Long> ticketIds = tickets.stream().map(Ticket::getId).collect(Collectors.toList());
+
+        for (int attempt = 1; ; attempt++) {
+            SeatBlock block = getAllocationIndex().findBlock(tickets.size(), ticketIds).
+                    orElseThrow(() -> new SeatNotFoundException(
+                            "No block of " + tickets.size() + " adjacent free seats available"));
+
+            List<SeatReservationDTO> reservations = new ArrayList<>(tickets.size());
+            for (int i = 0; i < tickets.size(); i++) {
+                SeatReservationDTO reservation = new SeatReservationDTO();
+                reservation.setSeatGroup(block.getSeatGroup());
+                reservation.setSeatNumber(block.getFirstSeatNumber() + i);
+                reservation.setTicketId(tickets.get(i).getId());
+                reservations.add(reservation);
+            }
+
+            try {
+                reserveSeats(reservations, false);
+                return seatRepository.findByTicketIdIn(ticketIds);
+            } catch (SeatReservationConflictException e) {
+                // Someone else took one of the seats in the meantime, try again with a fresh index
+                allocationIndex = null;
+                if (attempt >= MAX_RESERVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
         }
-        int lowestSeatToRemove = Math.max(1, seatsInSeatGroup - seatsToRemove + 1);
+    }
+
+    private static String seatKey(String seatGroup, int seatNumber) {
+        return seatGroup + ":" + seatNumber;
+    }
+
+    @Override
+    public void clearSeat(String groupName, int seatNumber) {
+        reserveSeat(groupName, seatNumber, null, true);
+    }
 
-        // We want to start removing seats with the highest numbers first
-        for (int i = seatsInSeatGroup; i >= lowestSeatToRemove; i--) {
-            clearSeat(seatGroupName, i);
-            Seat seat = getSeatBySeatGroupAndSeatNumber(seatGroupName, i);
-            seatRepository.delete(seat);
+    /**
+     * Add Seats to the end of a Seat group. The Seats are inserted in a single transaction, in JDBC batches.
+     */
+    @Override
+    public void addSeats(SeatGroupDTO seatGroupDTO) {
+        if (RESERVED_SEAT_GROUP_NAMES.contains(seatGroupDTO.getSeatGroupName())) {
+            throw new IllegalArgumentException("Seat group name " + seatGroupDTO.getSeatGroupName() + " is reserved");
         }
+        transactionTemplate.executeWithoutResult(status -> {
+            int highestSeat = seatRepository.findFirstBySeatGroupOrderBySeatNumberDesc(seatGroupDTO.getSeatGroupName()).
+                    map(Seat::getSeatNumber).
+                    orElse(0);
+
+            List<Seat> seatList = new ArrayList<>(seatGroupDTO.getNumberOfSeats());
+            for (int i = 1 + highestSeat; i <= seatGroupDTO.getNumberOfSeats() + highestSeat; i++) {
+                seatList.add(new Seat(seatGroupDTO.getSeatGroupName(), i));
+            }
+            seatRepository.saveAll(seatList);
+            afterCommit(this::seatmapStructureChanged);
+        });
+    }
+
+    /**
+     * Remove the highest numbered Seats of a Seat group with a single delete. The owners of tickets on the removed
+     * Seats are notified once, after the removal has been committed.
+     */
+    @Override
+    public void removeSeats(SeatGroupDTO seatGroupDTO) {
+        String seatGroupName = seatGroupDTO.getSeatGroupName();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Seat> seatGroup = seatRepository.findBySeatGroupOrderBySeatNumberDesc(seatGroupName);
+            if (seatGroup.isEmpty()) {
+                throw new SeatNotFoundException("SeatGroup " + seatGroupName + " not found!");
+            }
+            int seatsToRemove = seatGroupDTO.getNumberOfSeats();
+            if (seatsToRemove < 0) {
+                throw new IllegalArgumentException("Number of seats needs to be higher than 1");
+            }
+
+            // We want to remove the seats with the highest numbers
+            List<Seat> removedSeats = seatGroup.subList(0, Math.min(seatsToRemove, seatGroup.size()));
+            Map<Long, User> displacedOwners = new HashMap<>();
+            for (Seat seat : removedSeats) {
+                if (seat.isTaken() && seat.getTicket().getOwner() != null) {
+                    User owner = seat.getTicket().getOwner();
+                    displacedOwners.put(owner.getId(), owner);
+                }
+            }
+            seatRepository.deleteAllByIdInBatch(removedSeats.stream().map(Seat::getId).collect(Collectors.toList()));
+
+            displacedOwners.values().forEach(mailService::sendSeatOverrideMail);
+            afterCommit(this::seatmapStructureChanged);
+        });
     }
 
     @Override
     public void setSeatLocked(String groupName, int seatNumber, boolean locked) {
         Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
+        if (seat.isLocked() == locked) {
+            return;
+        }
         seat.setLocked(locked);
         seatRepository.save(seat);
+        seatmapChanged(Collections.singletonList(seat));
     }
 
     @Override
     public void setSeatGroupLocked(String groupName, boolean locked) {
-        List<Seat> seatGroup = seatRepository.findBySeatGroup(groupName);
-        seatGroup.forEach(seat -> seat.setLocked(locked));
-        seatRepository.saveAll(seatGroup);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (seatRepository.updateSeatGroupLocked(groupName, locked) > 0) {
+                afterCommit(this::seatmapStructureChanged);
+            }
+        });
     }
 
     @Override
     public void setAllSeatsLock(boolean locked) {
-        List<Seat> seats = seatRepository.findAll();
-        seats.forEach(seat -> seat.setLocked(locked));
-        seatRepository.saveAll(seats);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (seatRepository.updateAllLocked(locked) > 0) {
+                afterCommit(this::seatmapStructureChanged);
+            }
+        });
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.SeatmapDelta;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface SeatmapEventService {
+
+    /**
+     * Subscribe to changes of the seatmap. The first event contains the version and ETag of the given snapshot, after
+     * which every change is pushed as a "seat" event. A "reload" event means the structure of the seatmap changed and
+     * it should be fetched again.
+     *
+     * @param snapshot The snapshot the client starts from
+     *
+     * @return The emitter for this subscriber
+     */
+    SseEmitter subscribe(SeatmapSnapshot snapshot);
+
+    void publish(List<SeatmapDelta> deltas);
+
+    void publishReload(long version);
+
+    int getSubscriberCount();
+}
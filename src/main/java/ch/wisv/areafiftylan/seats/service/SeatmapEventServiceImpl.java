@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.SeatmapDelta;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@Slf4j
+public class SeatmapEventServiceImpl implements SeatmapEventService {
+
+    // Events a subscriber may lag behind before it is dropped
+    private static final int SUBSCRIBER_BUFFER_SIZE = 256;
+    private static final long SUBSCRIBER_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // Sending happens on these threads, so a seat reservation never waits for a slow client
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(2,
+            new ThreadFactoryBuilder().setNameFormat("seatmap-events-%d").setDaemon(true).build());
+
+    @Override
+    public SseEmitter subscribe(SeatmapSnapshot snapshot) {
+        Subscriber subscriber = new Subscriber(createEmitter());
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Register before sending the version, so no change can fall in between
+        subscribers.add(subscriber);
+        subscriber.offer(SseEmitter.event().name("version").id(String.valueOf(snapshot.getVersion()))
+                .data(ImmutableMap.of("version", snapshot.getVersion(), "etag", snapshot.getEtag())));
+        dispatch(subscriber);
+
+        return subscriber.emitter;
+    }
+
+    // Overridden in tests, to stand in for a client that reads slowly
+    protected SseEmitter createEmitter() {
+        return new SseEmitter(SUBSCRIBER_TIMEOUT);
+    }
+
+    @Override
+    public void publish(List<SeatmapDelta> deltas) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            for (SeatmapDelta delta : deltas) {
+                if (!subscriber.offer(
+                        SseEmitter.event().name("seat").id(String.valueOf(delta.getVersion())).data(delta))) {
+                    drop(subscriber);
+                    break;
+                }
+            }
+            dispatch(subscriber);
+        }
+    }
+
+    @Override
+    public void publishReload(long version) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(SseEmitter.event().name("reload").id(String.valueOf(version)).data(version))) {
+                drop(subscriber);
+            } else {
+                dispatch(subscriber);
+            }
+        }
+    }
+
+    @Override
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.sending.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.queue.poll()) != null) {
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, the emitter callbacks take care of the rest
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+            return;
+        } finally {
+            subscriber.sending.set(false);
+        }
+
+        // Events might have been queued after the last poll, but before releasing the sending flag
+        if (!subscriber.queue.isEmpty() && subscribers.contains(subscriber)) {
+            dispatch(subscriber);
+        }
+    }
+
+    /**
+     * Drop a subscriber that can't keep up. Completing the emitter closes the stream, after which the client should
+     * fetch the full seatmap and subscribe again.
+     */
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            log.info("Dropping slow seatmap subscriber");
+            subscriber.queue.clear();
+            subscriber.emitter.complete();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        dispatcher.shutdownNow();
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue =
+                new ArrayBlockingQueue<>(SUBSCRIBER_BUFFER_SIZE);
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private boolean offer(SseEmitter.SseEventBuilder event) {
+            return queue.offer(event);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.Seat;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the Seats of each Team, keyed by team name. Entries belong to a seatmap version and are ignored as soon as
+ * any Seat changes. Teams are evicted when their members change. The TTL bounds the staleness of anything that changes
+ * outside of those paths, like ticket transfers.
+ */
+@Component
+public class TeamSeatCache {
+
+    private final Cache<String, CachedSeats> seatCache;
+
+    public TeamSeatCache(@Value("${a5l.seats.snapshotMaxAge:30}") long maxAgeSeconds) {
+        seatCache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(maxAgeSeconds, TimeUnit.SECONDS).build();
+    }
+
+    public Optional<List<Seat>> get(String teamName, long seatmapVersion) {
+        CachedSeats cachedSeats = seatCache.getIfPresent(key(teamName));
+        if (cachedSeats == null || cachedSeats.getSeatmapVersion() != seatmapVersion) {
+            return Optional.empty();
+        }
+        return Optional.of(cachedSeats.getSeats());
+    }
+
+    public void put(String teamName, long seatmapVersion, List<Seat> seats) {
+        seatCache.put(key(teamName), new CachedSeats(seatmapVersion, Collections.unmodifiableList(seats)));
+    }
+
+    public void evictTeam(String teamName) {
+        seatCache.invalidate(key(teamName));
+    }
+
+    public void evictAll() {
+        seatCache.invalidateAll();
+    }
+
+    private static String key(String teamName) {
+        return teamName.toLowerCase(Locale.ROOT);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class CachedSeats {
+        private final long seatmapVersion;
+        private final List<Seat> seats;
+    }
+}
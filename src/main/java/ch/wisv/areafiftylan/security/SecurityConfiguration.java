@@ -18,7 +18,6 @@
 package ch.wisv.areafiftylan.security;
 
 import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
-import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -49,8 +48,6 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final UserDetailsService userDetailsService;
 
-    private final AuthenticationTokenRepository authenticationTokenRepository;
-
     private AuthenticationService authenticationService;
 
     @Value("${a5l.ratelimit.minutes:10}")
@@ -59,10 +56,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     private boolean RATELIMIT_ENABLED;
 
     @Autowired
-    public SecurityConfiguration(AuthenticationTokenRepository authenticationTokenRepository,
-                                 @Qualifier("userServiceImpl") UserDetailsService userDetailsService,
+    public SecurityConfiguration(@Qualifier("userServiceImpl") UserDetailsService userDetailsService,
                                  AuthenticationService authenticationService) {
-        this.authenticationTokenRepository = authenticationTokenRepository;
         this.userDetailsService = userDetailsService;
         this.authenticationService = authenticationService;
     }
@@ -99,7 +94,7 @@ protected void configure(HttpSecurity http) throws Exception {
 
         http.addFilterAfter(jsonLoginFilter, UsernamePasswordAuthenticationFilter.class);
         // Add support for Token-base authentication
-        http.addFilterAfter(new TokenAuthenticationFilter(authenticationTokenRepository),
+        http.addFilterAfter(new TokenAuthenticationFilter(authenticationService),
                 UsernamePasswordAuthenticationFilter.class);
     }
 
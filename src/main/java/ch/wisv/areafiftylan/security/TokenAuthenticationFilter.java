@@ -17,9 +17,10 @@
 
 package ch.wisv.areafiftylan.security;
 
-import ch.wisv.areafiftylan.security.token.AuthenticationToken;
-import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
-import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.exception.InvalidTokenException;
+import ch.wisv.areafiftylan.exception.XAuthTokenNotFoundException;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
+import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
 import com.google.common.base.Strings;
 import org.slf4j.MDC;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -33,14 +34,13 @@
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Optional;
 
 class TokenAuthenticationFilter extends GenericFilterBean {
 
-    private final AuthenticationTokenRepository authenticationTokenRepository;
+    private final AuthenticationService authenticationService;
 
-    TokenAuthenticationFilter(AuthenticationTokenRepository authenticationTokenRepository) {
-        this.authenticationTokenRepository = authenticationTokenRepository;
+    TokenAuthenticationFilter(AuthenticationService authenticationService) {
+        this.authenticationService = authenticationService;
     }
 
     @Override
@@ -50,24 +50,20 @@ public void doFilter(ServletRequest request, ServletResponse response, FilterCha
         String xAuth = ((HttpServletRequest) request).getHeader("X-Auth-Token");
 
         if (!Strings.isNullOrEmpty(xAuth)) {
-            Optional<AuthenticationToken> authenticationTokenOptional =
-                    authenticationTokenRepository.findByToken(xAuth);
-            if (!authenticationTokenOptional.isPresent()) {
+            AuthenticatedUser user;
+            try {
+                user = authenticationService.authenticateByToken(xAuth);
+            } catch (XAuthTokenNotFoundException e) {
                 ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token not found");
                 return;
-            } else {
-                AuthenticationToken authenticationToken = authenticationTokenOptional.get();
-                if (!authenticationToken.isValid()) {
-                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token Expired");
-                    return;
-                } else {
-                    User user = authenticationToken.getUser();
-                    // Add email to all logging for this request
-                    MDC.put("user_id", user.getId().toString());
-                    SecurityContextHolder.getContext().setAuthentication(
-                            new PreAuthenticatedAuthenticationToken(user, "N/A", user.getAuthorities()));
-                }
+            } catch (InvalidTokenException e) {
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token Expired");
+                return;
             }
+            // Add email to all logging for this request
+            MDC.put("user_id", user.getId().toString());
+            SecurityContextHolder.getContext().setAuthentication(
+                    new PreAuthenticatedAuthenticationToken(user, "N/A", user.getAuthorities()));
         }
 
         chain.doFilter(request, response);
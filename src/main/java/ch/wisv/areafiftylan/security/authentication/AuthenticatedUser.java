@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.authentication;
+
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import lombok.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable principal for requests authenticated with an X-Auth-Token. It only carries the fields that authorization
+ * checks need, so it can be cached per token and shared between requests without dragging a JPA entity (and its
+ * lazy associations) along. Controllers that need the full User should load it through the UserService.
+ */
+@Value
+public class AuthenticatedUser implements UserDetails {
+
+    Long id;
+
+    String email;
+
+    // One bit per Role ordinal
+    int roleMask;
+
+    boolean enabled;
+
+    boolean accountNonLocked;
+
+    public static AuthenticatedUser of(User user) {
+        int mask = 0;
+        for (Role role : Role.values()) {
+            if (user.getAuthorities().contains(role)) {
+                mask |= 1 << role.ordinal();
+            }
+        }
+        return new AuthenticatedUser(user.getId(), user.getEmail(), mask, user.isEnabled(), user.isAccountNonLocked());
+    }
+
+    public boolean hasRole(Role role) {
+        return (roleMask & (1 << role.ordinal())) != 0;
+    }
+
+    /**
+     * Check whether this principal belongs to the given User entity.
+     *
+     * @param user The User to compare with, may be null
+     *
+     * @return true if the User has the same id as this principal
+     */
+    public boolean is(User user) {
+        return user != null && id.equals(user.getId());
+    }
+
+    @Override
+    public Set<Role> getAuthorities() {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        for (Role role : Role.values()) {
+            if (hasRole(role)) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    @Override
+    public String getPassword() {
+        // Token-authenticated requests never need the password hash
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
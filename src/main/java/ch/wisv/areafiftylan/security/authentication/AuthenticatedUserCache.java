@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.authentication;
+
+import ch.wisv.areafiftylan.security.token.AuthenticationToken;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived cache of AuthenticatedUser principals, keyed by X-Auth-Token. This keeps the token lookup (and the
+ * eager user, profile and roles join behind it) off the hot path for repeated requests with the same token.
+ * <p>
+ * Entries are evicted when a token is revoked or deleted, and when the roles or lock state of a user change. The TTL
+ * bounds the staleness of anything that changes outside of those paths.
+ */
+@Component
+public class AuthenticatedUserCache {
+
+    private final Cache<String, CachedToken> tokenCache;
+
+    public AuthenticatedUserCache() {
+        tokenCache = CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(1, TimeUnit.MINUTES).build();
+    }
+
+    /**
+     * Get the cached principal for a token, as long as the token itself has not expired in the meantime.
+     *
+     * @param xAuth The X-Auth-Token
+     *
+     * @return The principal, or empty if the token is not cached or expired
+     */
+    public Optional<AuthenticatedUser> get(String xAuth) {
+        CachedToken cachedToken = tokenCache.getIfPresent(xAuth);
+        if (cachedToken == null) {
+            return Optional.empty();
+        }
+        if (cachedToken.getExpiryDate() != null && LocalDateTime.now().isAfter(cachedToken.getExpiryDate())) {
+            tokenCache.invalidate(xAuth);
+            return Optional.empty();
+        }
+        return Optional.of(cachedToken.getPrincipal());
+    }
+
+    public AuthenticatedUser put(AuthenticationToken token) {
+        AuthenticatedUser principal = AuthenticatedUser.of(token.getUser());
+        LocalDateTime expiryDate = token.isExpirable() ? token.getExpiryDate() : null;
+        tokenCache.put(token.getToken(), new CachedToken(principal, expiryDate));
+        return principal;
+    }
+
+    public void evictToken(String xAuth) {
+        tokenCache.invalidate(xAuth);
+    }
+
+    public void evictUser(Long userId) {
+        tokenCache.asMap().values().removeIf(cachedToken -> cachedToken.getPrincipal().getId().equals(userId));
+    }
+
+    public void evictAll() {
+        tokenCache.invalidateAll();
+    }
+
+    @Value
+    private static class CachedToken {
+        AuthenticatedUser principal;
+        LocalDateTime expiryDate;
+    }
+}
@@ -23,6 +23,19 @@ public interface AuthenticationService {
 
     String createNewAuthToken(String email);
 
+    /**
+     * Resolve an X-Auth-Token to the principal it belongs to. Results are cached per token, so repeated requests with
+     * the same token don't hit the database.
+     *
+     * @param xAuth The X-Auth-Token
+     *
+     * @return The principal belonging to the token
+     *
+     * @throws ch.wisv.areafiftylan.exception.XAuthTokenNotFoundException If the token doesn't exist
+     * @throws ch.wisv.areafiftylan.exception.InvalidTokenException       If the token is expired or revoked
+     */
+    AuthenticatedUser authenticateByToken(String xAuth);
+
     void removeAuthToken(String xAuth);
 
     void removeAuthTokenForUser(User user);
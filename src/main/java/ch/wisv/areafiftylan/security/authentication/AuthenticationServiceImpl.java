@@ -45,16 +45,18 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final PasswordResetTokenRepository passwordResetTokenRepository;
 
     private final UserService userService;
+    private final AuthenticatedUserCache authenticatedUserCache;
 
     @Autowired
     public AuthenticationServiceImpl(AuthenticationTokenRepository authenticationTokenRepository,
                                      VerificationTokenRepository verificationTokenRepository,
                                      PasswordResetTokenRepository passwordResetTokenRepository,
-                                     UserService userService) {
+                                     UserService userService, AuthenticatedUserCache authenticatedUserCache) {
         this.authenticationTokenRepository = authenticationTokenRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.passwordResetTokenRepository = passwordResetTokenRepository;
         this.userService = userService;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     @Override
@@ -65,11 +67,27 @@ public String createNewAuthToken(String email) {
         List<AuthenticationToken> existingTokens = authenticationTokenRepository.findByUserEmailOrderByExpiryDate(email);
         if (existingTokens.size() >= 4) {
             authenticationTokenRepository.delete(existingTokens.get(0));
+            authenticatedUserCache.evictToken(existingTokens.get(0).getToken());
         }
 
         return authenticationTokenRepository.saveAndFlush(new AuthenticationToken(user)).getToken();
     }
 
+    @Override
+    public AuthenticatedUser authenticateByToken(String xAuth) {
+        Optional<AuthenticatedUser> cached = authenticatedUserCache.get(xAuth);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        AuthenticationToken token =
+                authenticationTokenRepository.findByToken(xAuth).orElseThrow(XAuthTokenNotFoundException::new);
+        if (!token.isValid()) {
+            throw new InvalidTokenException();
+        }
+
+        return authenticatedUserCache.put(token);
+    }
 
     @Override
     public void removeAuthToken(String xAuth) {
@@ -82,16 +100,19 @@ public void removeAuthToken(String xAuth) {
 
         token.revoke();
         authenticationTokenRepository.saveAndFlush(token);
+        authenticatedUserCache.evictToken(xAuth);
     }
 
     @Override
     public void removeAuthTokenForUser(User user) {
         authenticationTokenRepository.deleteByUser(user);
+        authenticatedUserCache.evictUser(user.getId());
     }
 
     @Override
     public void removeAllAuthTokens() {
         authenticationTokenRepository.deleteAll();
+        authenticatedUserCache.evictAll();
         log.info("Deleted all authentication tokens");
     }
 
@@ -17,6 +17,8 @@
 
 package ch.wisv.areafiftylan.security.authentication;
 
+import java.util.Collection;
+
 /**
  * The CurrentUserService is for permissions that require some logic to be determined.
  */
@@ -39,6 +41,8 @@ public interface CurrentUserService {
 
     boolean canReserveSeat(Object principal, Long ticketId);
 
+    boolean canReserveSeats(Object principal, Collection<Long> ticketIds);
+
     boolean canRevokeInvite(Object principal, String token);
 
     boolean canAcceptInvite(Object principal, String token);
@@ -33,10 +33,11 @@
 import ch.wisv.areafiftylan.users.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class CurrentUserServiceImpl implements CurrentUserService {
@@ -63,30 +64,30 @@ public CurrentUserServiceImpl(TeamService teamService, OrderService orderService
         roleHierarchy.setHierarchy(SecurityConfiguration.HIERARCHY);
     }
 
-    private boolean hasRole(User user, Role role) {
+    private boolean hasRole(AuthenticatedUser user, Role role) {
         return roleHierarchy.getReachableGrantedAuthorities(user.getAuthorities()).contains(role);
     }
 
-    private boolean isAdmin(User user) {
+    private boolean isAdmin(AuthenticatedUser user) {
         return hasRole(user, Role.ROLE_ADMIN);
     }
 
-    private boolean isOperator(User user) {
+    private boolean isOperator(AuthenticatedUser user) {
         return hasRole(user, Role.ROLE_OPERATOR);
     }
 
-    private boolean isCommittee(User user) {
+    private boolean isCommittee(AuthenticatedUser user) {
         return hasRole(user, Role.ROLE_COMMITTEE);
     }
 
-    private boolean isTeamCaptain(Team team, User user) {
+    private boolean isTeamCaptain(Team team, AuthenticatedUser user) {
         return team.getCaptain().getEmail().equals(user.getEmail());
     }
 
     @Override
     public boolean canAccessUser(Object principal, Long userId) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
             return user.getId().equals(userId) || isAdmin(user);
         }
         return false;
@@ -94,8 +95,8 @@ public boolean canAccessUser(Object principal, Long userId) {
 
     @Override
     public boolean canAccessTeam(Object principal, Long teamId) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
             Team team = teamService.getTeamById(teamId);
             // Check for each of the teammembers if the email matches the requester
             return team.getMembers().stream().anyMatch(u -> u.getEmail().equals(user.getEmail())) || isAdmin(user);
@@ -105,8 +106,8 @@ public boolean canAccessTeam(Object principal, Long teamId) {
 
     @Override
     public boolean canEditTeam(Object principal, Long teamId) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
             Team team = teamService.getTeamById(teamId);
             return isTeamCaptain(team, user) || isAdmin(user);
         }
@@ -115,8 +116,8 @@ public boolean canEditTeam(Object principal, Long teamId) {
 
     @Override
     public boolean canRemoveFromTeam(Object principal, Long teamId, String email) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
             Team team = teamService.getTeamById(teamId);
 
             // You can remove people from a Team if you're Admin, the Team Captain, or if you want to remove yourself
@@ -134,8 +135,8 @@ public boolean canAccessOrder(Object principal, Long orderId) {
             return true;
         }
 
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
             // Return true if the order is owned by the user, or the user is an admin
             return order.getUser().getEmail().equals(user.getEmail()) || isAdmin(user);
         }
@@ -144,20 +145,20 @@ public boolean canAccessOrder(Object principal, Long orderId) {
 
     @Override
     public boolean isTicketOwner(Object principal, Long ticketId) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
-            return ticketService.getTicketById(ticketId).getOwner().equals(user);
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
+            return user.is(ticketService.getTicketById(ticketId).getOwner());
         }
         return false;
     }
 
     @Override
     public boolean canReserveSeat(Object principal, Long ticketId) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
 
             User owner = ticketService.getTicketById(ticketId).getOwner();
-            if (owner.equals(user) || isAdmin(user)) {
+            if (user.is(owner) || isAdmin(user)) {
                 return true;
             }
 
@@ -169,31 +170,53 @@ public boolean canReserveSeat(Object principal, Long ticketId) {
         return false;
     }
 
+    @Override
+    public boolean canReserveSeats(Object principal, Collection<Long> ticketIds) {
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
+            if (isAdmin(user)) {
+                return true;
+            }
+
+            // The user can seat themselves and the members of all teams they're the captain of
+            Set<Long> allowedOwners = teamService.getTeamByCaptainId(user.getId()).stream().
+                    flatMap(team -> team.getMembers().stream()).
+                    map(User::getId).
+                    collect(Collectors.toSet());
+            allowedOwners.add(user.getId());
+
+            // Unknown tickets are reported as conflicts by the reservation itself
+            return ticketRepository.findAllById(ticketIds).stream().
+                    allMatch(ticket -> ticket.getOwner() != null && allowedOwners.contains(ticket.getOwner().getId()));
+        }
+        return false;
+    }
+
     @Override
     public boolean canRevokeInvite(Object principal, String token) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
 
             TeamInviteToken teamInviteToken =
                     teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
 
             // Tokens can be revoked by the target user, an Admin or the Captain
-            return teamInviteToken.getUser().equals(user) || isAdmin(user) ||
-                    teamInviteToken.getTeam().getCaptain().equals(user);
+            return user.is(teamInviteToken.getUser()) || isAdmin(user) ||
+                    user.is(teamInviteToken.getTeam().getCaptain());
         }
         return false;
     }
 
     @Override
     public boolean canAcceptInvite(Object principal, String token) {
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
 
             TeamInviteToken teamInviteToken =
                     teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
 
             // Tokens can only be accepted by the target user
-            return teamInviteToken.getUser().equals(user);
+            return user.is(teamInviteToken.getUser());
         }
         return false;
 
@@ -203,9 +226,9 @@ public boolean canAcceptInvite(Object principal, String token) {
     public boolean isTicketSender(Object principal, String token) {
         TicketTransferToken ttt = tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
 
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
-            return ttt.getTicket().getOwner().equals(user);
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
+            return user.is(ttt.getTicket().getOwner());
         }
         return false;
     }
@@ -214,9 +237,9 @@ public boolean isTicketSender(Object principal, String token) {
     public boolean isTicketReceiver(Object principal, String token) {
         TicketTransferToken ttt = tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
 
-        if (principal instanceof UserDetails) {
-            User user = (User) principal;
-            return ttt.getUser().equals(user);
+        if (principal instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) principal;
+            return user.is(ttt.getUser());
         }
         return false;
     }
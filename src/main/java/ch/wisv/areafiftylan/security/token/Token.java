@@ -29,6 +29,7 @@
 @Data
 @NoArgsConstructor
 @Inheritance(strategy = InheritanceType.JOINED)
+@Table(indexes = @Index(name = "token_expiry_date_idx", columnList = "expiry_date"))
 public abstract class Token {
     //Zero means not expirable
     private static final int EXPIRATION = 60 * 24;
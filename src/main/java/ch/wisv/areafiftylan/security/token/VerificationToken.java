@@ -30,4 +30,4 @@ public class VerificationToken extends Token {
     public VerificationToken(User user) {
         super(user, EXPIRATION);
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,11 @@
 package ch.wisv.areafiftylan.security.token.repository;
 
 import ch.wisv.areafiftylan.security.token.VerificationToken;
+import ch.wisv.areafiftylan.users.model.ExpiredRegistration;
 import ch.wisv.areafiftylan.users.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -30,4 +34,14 @@ public interface VerificationTokenRepository extends TokenRepository<Verificatio
     List<VerificationToken> findAllByExpiryDateBefore(LocalDateTime date);
 
     Optional<VerificationToken> findByUser(User user);
+
+    // Users that got an order, ticket or team in the meantime are left alone, they can't be removed in bulk
+    @Query("select t.id as tokenId, u.id as userId, u.email as email, p.id as profileId, " +
+            "p.displayName as displayName from VerificationToken t join t.user u left join u.profile p " +
+            "where t.expiryDate < :before and t.used = false and u.enabled = false " +
+            "and not exists (select o.id from Order o where o.user = u) " +
+            "and not exists (select ti.id from Ticket ti where ti.owner = u) " +
+            "and not exists (select tm.id from Team tm where tm.captain = u or u member of tm.members) " +
+            "order by t.id")
+    List<ExpiredRegistration> findExpiredRegistrations(@Param("before") LocalDateTime before, Pageable pageable);
 }
@@ -19,9 +19,11 @@
 
 import ch.wisv.areafiftylan.seats.model.Seat;
 import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.model.TeamDTO;
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
+import ch.wisv.areafiftylan.teams.model.TeamSummary;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.Role;
 import ch.wisv.areafiftylan.users.model.User;
@@ -70,12 +72,7 @@ public TeamRestController(TeamService teamService, SeatService seatService) {
     @PreAuthorize("isAuthenticated()")
     @JsonView(View.Public.class)
     @PostMapping
-    ResponseEntity<?> add(@AuthenticationPrincipal User user, @Validated @RequestBody TeamDTO teamDTO) {
-        if (teamService.teamnameUsed(teamDTO.getTeamName())) {
-            return createResponseEntity(HttpStatus.CONFLICT,
-                    "Team with name \"" + teamDTO.getTeamName() + "\" already exists.");
-        }
-
+    ResponseEntity<?> add(@AuthenticationPrincipal AuthenticatedUser user, @Validated @RequestBody TeamDTO teamDTO) {
         Team team;
         // Users can only create teams with themselves as Captain
         if (user.getAuthorities().contains(Role.ROLE_ADMIN)) {
@@ -110,7 +107,7 @@ ResponseEntity<?> add(@AuthenticationPrincipal User user, @Validated @RequestBod
     @PreAuthorize("@currentUserServiceImpl.canEditTeam(principal, #teamID)")
     @JsonView(View.Public.class)
     @PostMapping("/{teamID}/captain")
-    ResponseEntity<?> changeCaptain(@AuthenticationPrincipal User user, @PathVariable Long teamID,
+    ResponseEntity<?> changeCaptain(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long teamID,
                                     @RequestBody String newCaptainEmail) {
         Team team = teamService.getTeamById(teamID);
 
@@ -135,6 +132,32 @@ public Collection<Team> readTeams() {
         return teamService.getAllTeams();
     }
 
+    /**
+     * Get a summary of all Teams: their id, name, captain id and the ids and display names of the members. Loaded with
+     * a single query, so this is the one to use for large listings. Only available as Admin.
+     *
+     * @return A collection of summaries of all Teams.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "summary")
+    public Collection<TeamSummary> readTeamSummaries() {
+        return teamService.getAllTeamSummaries();
+    }
+
+    /**
+     * Check whether a team name is still available, for example while filling in the create team form.
+     *
+     * @param teamName The team name to check
+     *
+     * @return True if the team name is available
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/available", params = "teamName")
+    public ResponseEntity<?> checkTeamNameAvailable(@RequestParam String teamName) {
+        return createResponseEntity(HttpStatus.OK, "Team name availability checked",
+                !teamService.teamnameUsed(teamName));
+    }
+
     /**
      * Get the team based on its Id. Can only be accessed by Team members or Admins.
      *
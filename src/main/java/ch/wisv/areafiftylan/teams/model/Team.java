@@ -19,17 +19,27 @@
 
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
 @Data
 @NoArgsConstructor
+@NamedEntityGraph(name = "Team.members",
+        attributeNodes = { @NamedAttributeNode(value = "members", subgraph = "user"),
+                @NamedAttributeNode(value = "captain", subgraph = "user") },
+        subgraphs = @NamedSubgraph(name = "user",
+                attributeNodes = { @NamedAttributeNode("profile"), @NamedAttributeNode("roles") }))
 @Table(uniqueConstraints = { @UniqueConstraint(name = "teamName", columnNames = { "teamName" }) })
 public class Team {
 
@@ -43,7 +53,8 @@ public class Team {
     private String teamName;
 
     @JsonView(View.Public.class)
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Lazy, repository methods that need the members fetch them with the Team.members entity graph
+    @ManyToMany(fetch = FetchType.LAZY)
     private Set<User> members;
 
     @JsonView(View.Public.class)
@@ -53,6 +64,12 @@ public class Team {
     @JsonView(View.Public.class)
     private int size;
 
+    // Last change, member changes included, for exports since a cursor
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime updatedAt;
+
     public Team(String teamName, User captain) {
         this.teamName = teamName;
         this.captain = captain;
@@ -62,14 +79,29 @@ public Team(String teamName, User captain) {
     }
 
     public boolean addMember(User member) {
-        return this.members.add(member);
+        boolean added = this.members.add(member);
+        if (added) {
+            // Only the join table changes, so the Team wouldn't be updated otherwise
+            touch();
+        }
+        return added;
     }
 
     public boolean removeMember(User member) {
-        return this.members.remove(member);
+        boolean removed = this.members.remove(member);
+        if (removed) {
+            touch();
+        }
+        return removed;
     }
 
     public int getSize() {
         return members.size();
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
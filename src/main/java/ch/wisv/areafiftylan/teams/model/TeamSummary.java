@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.teams.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Lightweight listing of a Team: its id, name, captain and the ids and display names of its members.
+ */
+@AllArgsConstructor
+@Getter
+public class TeamSummary {
+
+    private final Long id;
+
+    private final String teamName;
+
+    private final Long captainId;
+
+    private final List<Member> members;
+
+    @AllArgsConstructor
+    @Getter
+    public static class Member {
+
+        private final Long id;
+
+        private final String displayName;
+    }
+}
@@ -18,21 +18,64 @@
 package ch.wisv.areafiftylan.teams.service;
 
 import ch.wisv.areafiftylan.teams.model.Team;
+import ch.wisv.areafiftylan.teams.model.TeamMemberRow;
+import ch.wisv.areafiftylan.users.model.MailRecipient;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TeamRepository extends JpaRepository<Team, Long> {
+    @EntityGraph("Team.members")
     Collection<Team> findAllByMembersEmailIgnoreCase(String email);
 
+    @EntityGraph("Team.members")
     Collection<Team> findByCaptainId(Long userId);
 
+    @EntityGraph("Team.members")
     Collection<Team> findAllByCaptainEmailIgnoreCase(String email);
 
+    @EntityGraph("Team.members")
     Optional<Team> findByTeamNameIgnoreCase(String teamName);
 
+    boolean existsByTeamNameIgnoreCase(String teamName);
+
+    @Query("select t.teamName from Team t")
+    List<String> findAllTeamNames();
+
+    @EntityGraph("Team.members")
     Optional<Team> findById(Long teamId);
+
+    @Override
+    @EntityGraph("Team.members")
+    List<Team> findAll();
+
+    @Query("select m.id as id, m.email as email, p.firstName as firstName, p.lastName as lastName " +
+            "from Team t join t.members m left join m.profile p where t.id = :teamId and m.id > :afterId order by m.id")
+    List<MailRecipient> findMailRecipients(@Param("teamId") Long teamId, @Param("afterId") long afterId,
+                                           Pageable pageable);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select t.id as teamId, t.teamName as teamName, c.id as captainId, m.id as memberId, " +
+            "p.displayName as displayName " +
+            "from Team t join t.captain c join t.members m left join m.profile p order by t.id, m.id")
+    Stream<TeamMemberRow> streamAllTeamMembers();
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select t.id as teamId, t.teamName as teamName, c.id as captainId, m.id as memberId, " +
+            "p.displayName as displayName " +
+            "from Team t join t.captain c join t.members m left join m.profile p " +
+            "where t.updatedAt > :since order by t.id, m.id")
+    Stream<TeamMemberRow> streamTeamMembersChangedSince(@Param("since") LocalDateTime since);
 }
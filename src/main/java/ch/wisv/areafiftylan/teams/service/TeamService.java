@@ -21,6 +21,7 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.model.TeamDTO;
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
+import ch.wisv.areafiftylan.teams.model.TeamSummary;
 
 import java.util.Collection;
 import java.util.List;
@@ -38,6 +39,13 @@ public interface TeamService {
 
     Collection<Team> getAllTeams();
 
+    /**
+     * Get all Teams with only the ids and display names of their members, in a single query.
+     *
+     * @return A summary of every Team
+     */
+    Collection<TeamSummary> getAllTeamSummaries();
+
     Collection<Team> getTeamsByMemberEmail(String email);
 
     Team update(Long teamId, String teamName, String captainEmail);
@@ -19,23 +19,32 @@
 
 import ch.wisv.areafiftylan.exception.TeamNotFoundException;
 import ch.wisv.areafiftylan.exception.TokenNotFoundException;
+import ch.wisv.areafiftylan.seats.service.TeamSeatCache;
 import ch.wisv.areafiftylan.security.token.TeamInviteToken;
 import ch.wisv.areafiftylan.security.token.Token;
 import ch.wisv.areafiftylan.security.token.repository.TeamInviteTokenRepository;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.model.TeamDTO;
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
+import ch.wisv.areafiftylan.teams.model.TeamMemberRow;
+import ch.wisv.areafiftylan.teams.model.TeamSummary;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
+import ch.wisv.areafiftylan.utils.NameAvailabilityIndex;
 import ch.wisv.areafiftylan.utils.mail.MailService;
 import com.google.common.base.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TeamServiceImpl implements TeamService {
@@ -43,22 +52,30 @@ public class TeamServiceImpl implements TeamService {
     private final UserService userService;
     private final MailService mailService;
     private final TeamInviteTokenRepository teamInviteTokenRepository;
+    private final TeamSeatCache teamSeatCache;
+    private final NameAvailabilityIndex nameAvailabilityIndex;
 
     @Autowired
     public TeamServiceImpl(TeamRepository teamRepository, UserService userService, MailService mailService,
-                           TeamInviteTokenRepository teamInviteTokenRepository) {
+                           TeamInviteTokenRepository teamInviteTokenRepository, TeamSeatCache teamSeatCache,
+                           NameAvailabilityIndex nameAvailabilityIndex) {
         this.teamRepository = teamRepository;
         this.userService = userService;
         this.mailService = mailService;
         this.teamInviteTokenRepository = teamInviteTokenRepository;
+        this.teamSeatCache = teamSeatCache;
+        this.nameAvailabilityIndex = nameAvailabilityIndex;
     }
 
     @Override
     public Team create(String email, String teamname) {
+        checkTeamnameAvailable(teamname);
         User captain = userService.getUserByEmail(email);
         Team team = new Team(teamname, captain);
 
-        return teamRepository.saveAndFlush(team);
+        team = teamRepository.saveAndFlush(team);
+        nameAvailabilityIndex.teamNameChanged(null, team.getTeamName());
+        return team;
     }
 
     @Override
@@ -74,7 +91,17 @@ public Team getTeamByTeamname(String teamname) {
 
     @Override
     public boolean teamnameUsed(String teamname) {
-        return teamRepository.findByTeamNameIgnoreCase(teamname).isPresent();
+        return nameAvailabilityIndex.isTeamNameTaken(teamname);
+    }
+
+    /**
+     * The name index can be stale or miss names created on other nodes, so writes check the database. The unique
+     * constraint is case sensitive, team names should be unique regardless of case.
+     */
+    private void checkTeamnameAvailable(String teamname) {
+        if (teamRepository.existsByTeamNameIgnoreCase(teamname)) {
+            throw new DataIntegrityViolationException("Team with name \"" + teamname + "\" already exists.");
+        }
     }
 
     @Override
@@ -87,6 +114,19 @@ public Collection<Team> getAllTeams() {
         return teamRepository.findAll();
     }
 
+    @Override
+    @Transactional
+    public Collection<TeamSummary> getAllTeamSummaries() {
+        // The rows are ordered by team, so each team is completed before the next one starts
+        Map<Long, TeamSummary> summaries = new LinkedHashMap<>();
+        try (Stream<TeamMemberRow> rows = teamRepository.streamAllTeamMembers()) {
+            rows.forEach(row -> summaries.computeIfAbsent(row.getTeamId(),
+                    teamId -> new TeamSummary(teamId, row.getTeamName(), row.getCaptainId(), new ArrayList<>())).
+                    getMembers().add(new TeamSummary.Member(row.getMemberId(), row.getDisplayName())));
+        }
+        return summaries.values();
+    }
+
     @Override
     public Collection<Team> getTeamsByMemberEmail(String email) {
         return teamRepository.findAllByMembersEmailIgnoreCase(email);
@@ -95,9 +135,15 @@ public Collection<Team> getTeamsByMemberEmail(String email) {
     @Override
     public Team update(Long teamId, String teamName, String captainEmail) {
         Team current = getTeamById(teamId);
+        String oldTeamName = current.getTeamName();
+        teamSeatCache.evictTeam(oldTeamName);
 
         // If the Teamname is set, change the Teamname
         if (!Strings.isNullOrEmpty(teamName)) {
+            // Changing only the casing of its own name is fine
+            if (!teamName.equalsIgnoreCase(oldTeamName)) {
+                checkTeamnameAvailable(teamName);
+            }
             current.setTeamName(teamName);
         }
 
@@ -107,7 +153,9 @@ public Team update(Long teamId, String teamName, String captainEmail) {
             current.setCaptain(captain);
         }
 
-        return teamRepository.saveAndFlush(current);
+        current = teamRepository.saveAndFlush(current);
+        nameAvailabilityIndex.teamNameChanged(oldTeamName, current.getTeamName());
+        return current;
     }
 
     @Override
@@ -116,6 +164,8 @@ public Team delete(Long teamId) {
         Team team = teamRepository.getOne(teamId);
         teamInviteTokenRepository.deleteByTeam(team);
         teamRepository.delete(team);
+        teamSeatCache.evictTeam(team.getTeamName());
+        nameAvailabilityIndex.teamNameChanged(team.getTeamName(), null);
         return team;
     }
 
@@ -191,10 +241,11 @@ public void addMemberByInvite(String token) {
 
     @Override
     public void addMember(Long teamId, String email) {
-        Team team = teamRepository.getOne(teamId);
+        Team team = getTeamById(teamId);
         User user = userService.getUserByEmail(email);
         if (team.addMember(user)) {
             teamRepository.saveAndFlush(team);
+            teamSeatCache.evictTeam(team.getTeamName());
         } else {
             throw new IllegalArgumentException("Could not add User to Team");
         }
@@ -214,6 +265,7 @@ public boolean removeMember(Long teamId, String email) {
         } else {
             team.removeMember(user);
             teamRepository.saveAndFlush(team);
+            teamSeatCache.evictTeam(team.getTeamName());
         }
         return true;
     }
@@ -24,11 +24,11 @@
 import ch.wisv.areafiftylan.products.service.TicketService;
 import ch.wisv.areafiftylan.seats.model.Seat;
 import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.security.authentication.PasswordChangeDTO;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
 import ch.wisv.areafiftylan.teams.service.TeamService;
-import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
@@ -87,7 +87,7 @@ public class CurrentUserRestController {
      * @return Statusmessage
      */
     @PostMapping("/password")
-    public ResponseEntity<?> changeCurrentUserPassword(@AuthenticationPrincipal User user,
+    public ResponseEntity<?> changeCurrentUserPassword(@AuthenticationPrincipal AuthenticatedUser user,
                                                        @RequestBody @Validated PasswordChangeDTO passwordChangeDTO) {
         userService.changePassword(user.getId(),
                 passwordChangeDTO.getOldPassword(), passwordChangeDTO.getNewPassword());
@@ -103,12 +103,12 @@ public ResponseEntity<?> changeCurrentUserPassword(@AuthenticationPrincipal User
      */
     @JsonView(View.Team.class)
     @GetMapping("/teams")
-    public Collection<Team> getCurrentTeams(@AuthenticationPrincipal User user) {
+    public Collection<Team> getCurrentTeams(@AuthenticationPrincipal AuthenticatedUser user) {
         return teamService.getTeamsByMemberEmail(user.getEmail());
     }
 
     @GetMapping("/teams/invites")
-    public List<TeamInviteResponse> getOpenInvites(@AuthenticationPrincipal User user) {
+    public List<TeamInviteResponse> getOpenInvites(@AuthenticationPrincipal AuthenticatedUser user) {
         return teamService.findTeamInvitesByEmail(user.getEmail());
     }
 
@@ -121,7 +121,7 @@ public List<TeamInviteResponse> getOpenInvites(@AuthenticationPrincipal User use
      */
     @JsonView(View.OrderOverview.class)
     @GetMapping("/orders")
-    public Collection<Order> getAllOrders(@AuthenticationPrincipal User user) {
+    public Collection<Order> getAllOrders(@AuthenticationPrincipal AuthenticatedUser user) {
         return orderService.findOrdersByEmail(user.getEmail());
     }
 
@@ -132,7 +132,7 @@ public Collection<Order> getAllOrders(@AuthenticationPrincipal User user) {
      * @return The current owned tickets, if any exist
      */
     @GetMapping("/tickets")
-    public Collection<Ticket> getAllTickets(@AuthenticationPrincipal User user) {
+    public Collection<Ticket> getAllTickets(@AuthenticationPrincipal AuthenticatedUser user) {
         return ticketService.findValidTicketsByOwnerEmail(user.getEmail());
     }
 
@@ -143,7 +143,7 @@ public Collection<Ticket> getAllTickets(@AuthenticationPrincipal User user) {
      * @return The current open order, if any exist
      */
     @GetMapping("/orders/open")
-    public List<Order> getOpenOrder(@AuthenticationPrincipal User user) {
+    public List<Order> getOpenOrder(@AuthenticationPrincipal AuthenticatedUser user) {
         return orderService.getOpenOrders(user.getEmail());
     }
 
@@ -154,7 +154,7 @@ public List<Order> getOpenOrder(@AuthenticationPrincipal User user) {
      * @return Returns a list of reserved seats by the user
      */
     @GetMapping("/seat")
-    public List<Seat> getCurrentUserSeat(@AuthenticationPrincipal User user) {
+    public List<Seat> getCurrentUserSeat(@AuthenticationPrincipal AuthenticatedUser user) {
         return seatService.getSeatsByEmail(user.getEmail());
     }
 }
@@ -18,6 +18,7 @@
 package ch.wisv.areafiftylan.users.controller;
 
 import ch.wisv.areafiftylan.extras.rfid.service.RFIDService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.users.model.Profile;
 import ch.wisv.areafiftylan.users.model.ProfileDTO;
 import ch.wisv.areafiftylan.users.model.User;
@@ -77,7 +78,12 @@ private boolean allowedToEditProfile(User user, ProfileDTO input) {
      */
     @PreAuthorize("isAuthenticated()")
     @PostMapping("/current/profile")
-    public ResponseEntity<?> addProfile(@AuthenticationPrincipal User user, @Validated @RequestBody ProfileDTO input) {
+    public ResponseEntity<?> addProfile(@AuthenticationPrincipal AuthenticatedUser principal,
+                                        @Validated @RequestBody ProfileDTO input) {
+        return updateProfile(userService.getUserById(principal.getId()), input);
+    }
+
+    private ResponseEntity<?> updateProfile(User user, ProfileDTO input) {
         if (allowedToEditProfile(user, input)) {
             User changedUser = userService.addProfile(user.getId(), input);
             return createResponseEntity(HttpStatus.OK, "Profile successfully changed", changedUser.getProfile());
@@ -99,7 +105,7 @@ public ResponseEntity<?> addProfile(@AuthenticationPrincipal User user, @Validat
     public ResponseEntity<?> addProfile(@PathVariable Long userId, @Validated @RequestBody ProfileDTO input) {
         User user = userService.getUserById(userId);
 
-        return this.addProfile(user, input);
+        return updateProfile(user, input);
     }
 
     /**
@@ -114,7 +120,7 @@ public ResponseEntity<?> addProfile(@PathVariable Long userId, @Validated @Reque
     public ResponseEntity<?> changeProfile(@PathVariable Long userId, @Validated @RequestBody ProfileDTO input) {
         User user = userService.getUserById(userId);
 
-        return this.addProfile(user, input);
+        return updateProfile(user, input);
     }
 
     /**
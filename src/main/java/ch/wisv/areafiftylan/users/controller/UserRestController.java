@@ -20,6 +20,7 @@
 import ch.wisv.areafiftylan.exception.CannotRemoveUserRoleException;
 import ch.wisv.areafiftylan.seats.model.Seat;
 import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
 import ch.wisv.areafiftylan.users.model.RoleDTO;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.model.UserDTO;
@@ -78,6 +79,47 @@ public ResponseEntity<?> add(@Validated @RequestBody UserDTO input) {
                 "User successfully created at " + httpHeaders.getLocation(), save);
     }
 
+    /**
+     * Check whether an email address is still available, for example while filling in the registration form. Answered
+     * from memory, registering with the address can still fail if it was taken in the meantime.
+     *
+     * @param email The email address to check
+     *
+     * @return True if the email address is available
+     */
+    @GetMapping(value = "/available", params = "email")
+    public ResponseEntity<?> checkEmailAvailable(@RequestParam String email) {
+        return createResponseEntity(HttpStatus.OK, "Email availability checked", userService.checkEmailAvailable(email));
+    }
+
+    /**
+     * Check whether the verification mail has been sent after registering. The mail is sent in the background, so it
+     * can still be pending for a moment after the registration succeeded.
+     *
+     * @param email The email address the user registered with
+     *
+     * @return The delivery status of the verification mail
+     */
+    @GetMapping(value = "/verification", params = "email")
+    public ResponseEntity<?> getVerificationMailStatus(@RequestParam String email) {
+        return createResponseEntity(HttpStatus.OK, "Verification mail status retrieved",
+                userService.getVerificationMailStatus(email));
+    }
+
+    /**
+     * Check whether a display name is still available, for example while filling in the profile form.
+     *
+     * @param displayName The display name to check
+     *
+     * @return True if the display name is available
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping(value = "/available", params = "displayName")
+    public ResponseEntity<?> checkDisplayNameAvailable(@RequestParam String displayName) {
+        return createResponseEntity(HttpStatus.OK, "Display name availability checked",
+                userService.checkDisplayNameAvailable(displayName));
+    }
+
     /**
      * This method accepts PUT requests on /users/{userId}. It replaces all fields with the new user provided in the
      * RequestBody and resets the profile fields. All references to the old user are maintained (Team membership ect).
@@ -119,18 +161,17 @@ public Collection<User> readUsers() {
     }
 
     /**
-     * Get the User currently logged in. Because our User model implements the Spring Security UserDetails, this can be
-     * directly derived from the Authentication object which is automatically added. Returns a not-found entity if
-     * there's no user logged in. Returns the user
+     * Get the User currently logged in. The Authentication object only holds a compact principal, so the full User is
+     * loaded by its id. Returns a not-found entity if there's no user logged in. Returns the user
      *
      * @param user the current user
      * @return The currently logged in User.
      */
     @GetMapping("/current")
-    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser user) {
         // To prevent 403 errors on this endpoint, we manually handle unauthenticated users, instead of @PreAuthorize.
         if (user != null) {
-            return new ResponseEntity<>(user, HttpStatus.OK);
+            return new ResponseEntity<>(userService.getUserById(user.getId()), HttpStatus.OK);
         } else {
             return createResponseEntity(HttpStatus.OK, "Not logged in");
         }
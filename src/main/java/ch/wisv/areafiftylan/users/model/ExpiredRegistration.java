@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.users.model;
+
+/**
+ * Projection of a registration that was never verified and whose VerificationToken has expired. Holds just enough to
+ * remove the User in bulk and keep the in-memory indexes up to date.
+ */
+public interface ExpiredRegistration {
+
+    Long getTokenId();
+
+    Long getUserId();
+
+    String getEmail();
+
+    Long getProfileId();
+
+    String getDisplayName();
+}
@@ -18,16 +18,23 @@
 package ch.wisv.areafiftylan.users.model;
 
 import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.Setter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Entity
 @Data
@@ -69,6 +76,12 @@ public class Profile implements Serializable {
     @NonNull
     private String notes;
 
+    // Last change, lets an export since a cursor pick up new display names
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime updatedAt;
+
     public void setAllFields(String firstName, String lastName, String displayName, LocalDate birthday, Gender gender, String address,
                              String zipcode, String city, String phoneNumber, String notes) {
         this.firstName = firstName;
@@ -82,4 +95,10 @@ public void setAllFields(String firstName, String lastName, String displayName,
         this.phoneNumber = phoneNumber;
         this.notes = notes;
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -22,10 +22,12 @@
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -33,6 +35,7 @@
 import javax.validation.constraints.Email;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -80,6 +83,12 @@ public class User implements Serializable, UserDetails {
 
     @JsonIgnore
     private boolean enabled = true;
+
+    // Last change of the account, for exports since a cursor
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime updatedAt;
     
     // This method is created to allow logging in using the email field
     @Override
@@ -116,4 +125,10 @@ public int getReference() {
     public void deleteRole(Role role) {
         this.roles.remove(role);
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -17,11 +17,23 @@
 
 package ch.wisv.areafiftylan.users.service;
 
+import ch.wisv.areafiftylan.users.model.MailRecipient;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.model.UserExportRow;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -29,4 +41,56 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneByEmailIgnoreCase(String email);
 
     Optional<User> findOneByProfileDisplayNameIgnoreCase(String displayName);
+
+    @Query("select u.email from User u")
+    List<String> findAllEmails();
+
+    @Query("select u.profile.displayName from User u where u.profile.displayName is not null")
+    List<String> findAllDisplayNames();
+
+    // Pages by id instead of offset, so each page is an index lookup however far along we are
+    @Query("select u.id as id, u.email as email, p.firstName as firstName, p.lastName as lastName " +
+            "from User u left join u.profile p where u.id > :afterId order by u.id")
+    List<MailRecipient> findMailRecipients(@Param("afterId") long afterId, Pageable pageable);
+
+    /*
+     * Bulk removal of Users, in the order of the foreign keys: their tokens and roles first, the Users themselves and
+     * finally their profiles.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Token t where t.user.id in :userIds")
+    int deleteTokensByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from user_role where user_id in :userIds", nativeQuery = true)
+    int deleteRolesByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from User u where u.id in :userIds")
+    int deleteAllByIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Profile p where p.id in :profileIds")
+    int deleteProfilesByIdIn(@Param("profileIds") Collection<Long> profileIds);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select distinct u.id as userId, u.email as email, u.passwordHash as passwordHash, " +
+            "p.displayName as displayName from Ticket t join t.owner u left join u.profile p " +
+            "where t.valid = true order by u.id")
+    Stream<UserExportRow> streamExportUsers();
+
+    // The change stamps are read one table at a time, so each query is a range scan on its updated_at index
+    @Query("select u.id from User u where u.updatedAt > :since")
+    List<Long> findIdsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select u.id from User u join u.profile p where p.updatedAt > :since")
+    List<Long> findIdsWithProfileUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select o.id from Ticket t join t.owner o where t.updatedAt > :since")
+    List<Long> findOwnerIdsWithTicketUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("select distinct u.id as userId, u.email as email, u.passwordHash as passwordHash, " +
+            "p.displayName as displayName from Ticket t join t.owner u left join u.profile p " +
+            "where t.valid = true and u.id in :userIds order by u.id")
+    List<UserExportRow> findExportUsersByIdIn(@Param("userIds") Collection<Long> userIds);
 }
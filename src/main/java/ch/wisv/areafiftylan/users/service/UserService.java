@@ -23,8 +23,10 @@
 import ch.wisv.areafiftylan.users.model.RoleDTO;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.model.UserDTO;
+import ch.wisv.areafiftylan.utils.mail.MailDeliveryStatus;
 import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 
 public interface UserService {
@@ -36,6 +38,14 @@ public interface UserService {
 
     User create(UserDTO userDTO) throws DataIntegrityViolationException;
 
+    /**
+     * Get the delivery status of the verification mail that was sent when the user with this email registered.
+     *
+     * @param email The email address the user registered with
+     * @return The status of the most recent verification mail
+     */
+    MailDeliveryStatus getVerificationMailStatus(String email);
+
     User replace(Long userId, UserDTO userDTO);
 
     void delete(Long userId);
@@ -54,6 +64,15 @@ public interface UserService {
 
     void verify(Long userId);
 
+    /**
+     * Remove the Users that never verified their account, in chunks so a large batch of registrations doesn't hold a
+     * single long transaction. Removing the same Users from two places at once is harmless.
+     *
+     * @param expiredBefore Only Users whose VerificationToken expired before this moment are removed
+     * @return The number of Users that were removed
+     */
+    int purgeUnverifiedUsers(LocalDateTime expiredBefore);
+
     void requestResetPassword(User user);
 
     void resetPassword(Long userId, String password);
@@ -62,6 +81,8 @@ public interface UserService {
 
     Boolean checkEmailAvailable(String email);
 
+    Boolean checkDisplayNameAvailable(String displayName);
+
     /**
      * This method checks wether a user is older than the alcohol age provided by properties.
      * @param userId The ID of the user to check.
@@ -18,19 +18,27 @@
 package ch.wisv.areafiftylan.users.service;
 
 import ch.wisv.areafiftylan.exception.CannotRemoveUserRoleException;
+import ch.wisv.areafiftylan.exception.TokenNotFoundException;
 import ch.wisv.areafiftylan.exception.UserNotFoundException;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUserCache;
 import ch.wisv.areafiftylan.security.token.PasswordResetToken;
 import ch.wisv.areafiftylan.security.token.VerificationToken;
 import ch.wisv.areafiftylan.security.token.repository.PasswordResetTokenRepository;
 import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
 import ch.wisv.areafiftylan.users.model.*;
+import ch.wisv.areafiftylan.utils.NameAvailabilityIndex;
+import ch.wisv.areafiftylan.utils.mail.MailCategory;
+import ch.wisv.areafiftylan.utils.mail.MailDeliveryStatus;
+import ch.wisv.areafiftylan.utils.mail.MailOutboxRepository;
 import ch.wisv.areafiftylan.utils.mail.MailService;
+import ch.wisv.areafiftylan.utils.mail.OutboxMail;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -38,11 +46,20 @@
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static ch.wisv.areafiftylan.utils.TransactionHooks.afterCommit;
 
 @Service
 @Slf4j
@@ -52,6 +69,10 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private final VerificationTokenRepository verificationTokenRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final MailService mailService;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final NameAvailabilityIndex nameAvailabilityIndex;
+    private final MailOutboxRepository mailOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
 
     private static final Set<Role> defaultRoles = new HashSet<>(Sets.newHashSet(Role.ROLE_USER));
 
@@ -64,12 +85,21 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     public static final int MIN_PASSWORD_LENGTH = 6;
 
+    private static final int PURGE_CHUNK_SIZE = 500;
+
     public UserServiceImpl(UserRepository userRepository, VerificationTokenRepository verificationTokenRepository,
-                           PasswordResetTokenRepository passwordResetTokenRepository, MailService mailService) {
+                           PasswordResetTokenRepository passwordResetTokenRepository, MailService mailService,
+                           AuthenticatedUserCache authenticatedUserCache, NameAvailabilityIndex nameAvailabilityIndex,
+                           MailOutboxRepository mailOutboxRepository,
+                           PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.mailService = mailService;
         this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.nameAvailabilityIndex = nameAvailabilityIndex;
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -92,22 +122,23 @@ public Collection<User> getAllUsers() {
     public User create(UserDTO userDTO) throws DataIntegrityViolationException {
         handleDuplicateUserFields(userDTO);
 
-        // Hash the plain password coming from the DTO
+        // Hash the plain password coming from the DTO. This is slow on purpose, so it's done before the transaction.
         String passwordHash = getPasswordHash(userDTO.getPassword());
-        User user = new User(userDTO.getEmail(), passwordHash);
+        User newUser = new User(userDTO.getEmail(), passwordHash);
         // Add default roles to User
         for (Role defaultRole : defaultRoles) {
-            user.addRole(defaultRole);
+            newUser.addRole(defaultRole);
         }
         // All users that register through the service have to be verified
-        user.setEnabled(false);
-
-        // Save the user so the verificationToken can be stored.
-        user = userRepository.saveAndFlush(user);
-
-        generateAndSendToken(user, userDTO.getOrderId());
-
-        return user;
+        newUser.setEnabled(false);
+
+        // The User, its VerificationToken and the verification mail in the outbox are committed together.
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.save(newUser);
+            generateAndSendToken(user, userDTO.getOrderId());
+            afterCommit(() -> nameAvailabilityIndex.emailChanged(null, user.getEmail()));
+            return user;
+        });
     }
 
     private void handleDuplicateUserFields(UserDTO userDTO) throws DataIntegrityViolationException {
@@ -119,8 +150,7 @@ private void handleDuplicateUserFields(UserDTO userDTO) throws DataIntegrityViol
 
     private void generateAndSendToken(User user, Long orderId) {
         // Create a new Verificationcode with this UUID, and link it to the user
-        VerificationToken verificationToken = new VerificationToken(user);
-        verificationTokenRepository.saveAndFlush(verificationToken);
+        VerificationToken verificationToken = verificationTokenRepository.save(new VerificationToken(user));
 
         // Build the URL and send this to the mailservice for sending.
         String confirmUrl = requestUrl + "?token=" + verificationToken.getToken();
@@ -130,15 +160,28 @@ private void generateAndSendToken(User user, Long orderId) {
         mailService.sendVerificationmail(user, confirmUrl);
     }
 
+    @Override
+    public MailDeliveryStatus getVerificationMailStatus(String email) {
+        return mailOutboxRepository.findFirstByCategoryAndRecipientIgnoreCaseOrderByIdDesc(MailCategory.VERIFICATION,
+                email).map(OutboxMail::getStatus)
+                .orElseThrow(() -> new TokenNotFoundException("for " + email));
+    }
+
     @Override
     public User replace(Long userId, UserDTO userDTO) {
         User user = userRepository.getOne(userId);
+        String oldEmail = user.getEmail();
+        String oldDisplayName = user.getProfile().getDisplayName();
 
         user.setEmail(userDTO.getEmail());
         user.setPasswordHash(getPasswordHash(userDTO.getPassword()));
         user.resetProfile();
 
-        return userRepository.saveAndFlush(user);
+        user = userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
+        nameAvailabilityIndex.emailChanged(oldEmail, user.getEmail());
+        nameAvailabilityIndex.displayNameChanged(oldDisplayName, null);
+        return user;
     }
 
     @Override
@@ -150,13 +193,17 @@ public void delete(Long userId) {
     @Override
     public User edit(Long userId, UserDTO userDTO) {
         User user = getUserById(userId);
+        String oldEmail = user.getEmail();
         if (!Strings.isNullOrEmpty(userDTO.getEmail())) {
             user.setEmail(userDTO.getEmail());
         }
         if (!Strings.isNullOrEmpty(userDTO.getPassword())) {
             user.setPasswordHash(getPasswordHash(userDTO.getPassword()));
         }
-        return userRepository.saveAndFlush(user);
+        user = userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
+        nameAvailabilityIndex.emailChanged(oldEmail, user.getEmail());
+        return user;
 
     }
 
@@ -173,12 +220,15 @@ public User addProfile(Long userId, ProfileDTO profileDTO) throws DataIntegrityV
         });
 
         User user = getUserById(userId);
+        String oldDisplayName = user.getProfile().getDisplayName();
 
         // Set all the profile fields at once
         user.getProfile().setAllFields(profileDTO.getFirstName(), profileDTO.getLastName(), profileDTO.getDisplayName(),
                 profileDTO.getBirthday(), profileDTO.getGender(), profileDTO.getAddress(), profileDTO.getZipcode(),
                 profileDTO.getCity(), profileDTO.getPhoneNumber(), profileDTO.getNotes());
-        return userRepository.saveAndFlush(user);
+        user = userRepository.saveAndFlush(user);
+        nameAvailabilityIndex.displayNameChanged(oldDisplayName, user.getProfile().getDisplayName());
+        return user;
 
     }
 
@@ -191,6 +241,7 @@ public User changeProfile(Long userId, ProfileDTO profileDTO) {
     public Profile resetProfile(Long userId) {
         Profile profile = getUserById(userId).getProfile();
         getUserById(userId).resetProfile();
+        nameAvailabilityIndex.displayNameChanged(profile.getDisplayName(), null);
         return profile;
     }
 
@@ -199,6 +250,7 @@ public void unlock(Long userId) {
         User user = getUserById(userId);
         user.setAccountNonLocked(true);
         userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
     }
 
     @Override
@@ -206,6 +258,7 @@ public void lock(Long userId) {
         User user = getUserById(userId);
         user.setAccountNonLocked(false);
         userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
     }
 
     @Override
@@ -213,6 +266,43 @@ public void verify(Long userId) {
         User user = getUserById(userId);
         user.setEnabled(true);
         userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
+    }
+
+    @Override
+    public int purgeUnverifiedUsers(LocalDateTime expiredBefore) {
+        AtomicInteger purged = new AtomicInteger();
+        int found;
+        do {
+            found = transactionTemplate.execute(status -> purgeChunk(expiredBefore, purged));
+        } while (found == PURGE_CHUNK_SIZE);
+        return purged.get();
+    }
+
+    private int purgeChunk(LocalDateTime expiredBefore, AtomicInteger purged) {
+        List<ExpiredRegistration> registrations = verificationTokenRepository
+                .findExpiredRegistrations(expiredBefore, PageRequest.of(0, PURGE_CHUNK_SIZE));
+        if (registrations.isEmpty()) {
+            return 0;
+        }
+        List<Long> userIds = registrations.stream().map(ExpiredRegistration::getUserId).collect(Collectors.toList());
+        List<Long> profileIds = registrations.stream().map(ExpiredRegistration::getProfileId).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        userRepository.deleteTokensByUserIdIn(userIds);
+        userRepository.deleteRolesByUserIdIn(userIds);
+        // Another node may have removed some of them already, only count what was removed here
+        purged.addAndGet(userRepository.deleteAllByIdIn(userIds));
+        if (!profileIds.isEmpty()) {
+            userRepository.deleteProfilesByIdIn(profileIds);
+        }
+
+        afterCommit(() -> registrations.forEach(registration -> {
+            authenticatedUserCache.evictUser(registration.getUserId());
+            nameAvailabilityIndex.emailChanged(registration.getEmail(), null);
+            nameAvailabilityIndex.displayNameChanged(registration.getDisplayName(), null);
+        }));
+        return registrations.size();
     }
 
     @Override
@@ -257,8 +347,12 @@ public void changePassword(Long userId, String oldPassword, String newPassword)
 
     @Override
     public Boolean checkEmailAvailable(String email) {
-        return !userRepository.findOneByEmailIgnoreCase(email).isPresent();
+        return !nameAvailabilityIndex.isEmailTaken(email);
+    }
 
+    @Override
+    public Boolean checkDisplayNameAvailable(String displayName) {
+        return !nameAvailabilityIndex.isDisplayNameTaken(displayName);
     }
 
     @Override
@@ -272,6 +366,7 @@ public void addRole(Long userId, RoleDTO input) {
         User user = getUserById(userId);
         user.addRole(input.getRole());
         userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
     }
 
     @Override
@@ -283,6 +378,7 @@ public void deleteRole(Long userId, RoleDTO input) {
         User user = getUserById(userId);
         user.deleteRole(input.getRole());
         userRepository.saveAndFlush(user);
+        authenticatedUserCache.evictUser(userId);
     }
 
     /**
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import ch.wisv.areafiftylan.teams.service.TeamRepository;
+import ch.wisv.areafiftylan.users.service.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory, case-folded index of the emails, display names and team names in use, so availability checks don't need
+ * a database connection. The index is loaded when the application is ready, kept in sync by the services that change
+ * these names and reloaded periodically to pick up changes made elsewhere.
+ * <p>
+ * The index only answers availability checks. Writes keep checking the database, which stays the final arbiter.
+ */
+@Component
+@Slf4j
+public class NameAvailabilityIndex {
+
+    private final UserRepository userRepository;
+    private final TeamRepository teamRepository;
+
+    // Names are counted, as display names aren't guaranteed to be unique in the database
+    private volatile ConcurrentMap<String, Integer> emails = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, Integer> displayNames = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, Integer> teamNames = new ConcurrentHashMap<>();
+
+    public NameAvailabilityIndex(UserRepository userRepository, TeamRepository teamRepository) {
+        this.userRepository = userRepository;
+        this.teamRepository = teamRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        emails = load(userRepository.findAllEmails());
+        displayNames = load(userRepository.findAllDisplayNames());
+        teamNames = load(teamRepository.findAllTeamNames());
+        log.debug("Loaded {} emails, {} display names and {} team names into the name index", emails.size(),
+                displayNames.size(), teamNames.size());
+    }
+
+    public boolean isEmailTaken(String email) {
+        return isTaken(emails, email);
+    }
+
+    public boolean isDisplayNameTaken(String displayName) {
+        return isTaken(displayNames, displayName);
+    }
+
+    public boolean isTeamNameTaken(String teamName) {
+        return isTaken(teamNames, teamName);
+    }
+
+    /**
+     * Update the index after an email changed. Use null as the old email for new users, and as the new email for
+     * removed users.
+     */
+    public void emailChanged(String oldEmail, String newEmail) {
+        replace(emails, oldEmail, newEmail);
+    }
+
+    public void displayNameChanged(String oldDisplayName, String newDisplayName) {
+        replace(displayNames, oldDisplayName, newDisplayName);
+    }
+
+    public void teamNameChanged(String oldTeamName, String newTeamName) {
+        replace(teamNames, oldTeamName, newTeamName);
+    }
+
+    private static ConcurrentMap<String, Integer> load(Collection<String> names) {
+        ConcurrentMap<String, Integer> index = new ConcurrentHashMap<>(names.size() * 2);
+        names.forEach(name -> add(index, name));
+        return index;
+    }
+
+    private static boolean isTaken(ConcurrentMap<String, Integer> index, String name) {
+        return name != null && index.containsKey(fold(name));
+    }
+
+    private static void replace(ConcurrentMap<String, Integer> index, String oldName, String newName) {
+        remove(index, oldName);
+        add(index, newName);
+    }
+
+    private static void add(ConcurrentMap<String, Integer> index, String name) {
+        if (name != null) {
+            index.merge(fold(name), 1, Integer::sum);
+        }
+    }
+
+    private static void remove(ConcurrentMap<String, Integer> index, String name) {
+        if (name != null) {
+            index.computeIfPresent(fold(name), (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
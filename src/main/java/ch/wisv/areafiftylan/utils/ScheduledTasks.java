@@ -17,14 +17,19 @@
 
 package ch.wisv.areafiftylan.utils;
 
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterService;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDIndex;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.model.order.OrderStatus;
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import ch.wisv.areafiftylan.seats.service.SeatService;
 import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
-import ch.wisv.areafiftylan.security.token.VerificationToken;
-import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
-import ch.wisv.areafiftylan.users.service.UserRepository;
+import ch.wisv.areafiftylan.users.service.UserService;
+import ch.wisv.areafiftylan.utils.lease.JobLeases;
+import ch.wisv.areafiftylan.utils.mail.BulkMailer;
+import ch.wisv.areafiftylan.utils.mail.MailOutbox;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
@@ -32,9 +37,11 @@
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -48,26 +55,58 @@ public class ScheduledTasks {
 
     private final int USER_CLEANUP_CHECK_INTERVAL_MINUTES = 60;
 
+    private final int SEAT_HOLD_EXPIRY_CHECK_INTERVAL_SECONDS = 5;
+
+    private final int NAME_INDEX_RELOAD_INTERVAL_MINUTES = 15;
+
+    private final int RFID_INDEX_RELOAD_INTERVAL_MINUTES = 1;
+
+    private final int LIVE_COUNTERS_RELOAD_INTERVAL_MINUTES = 5;
+
+    private final int MAIL_OUTBOX_DRAIN_INTERVAL_SECONDS = 2;
+
+    private final int MAIL_OUTBOX_KEEP_SENT_DAYS = 30;
+
+    private final int BULK_MAIL_HEARTBEAT_INTERVAL_SECONDS = 60;
+
     private final OrderRepository orderRepository;
     private final OrderService orderService;
     private final AuthenticationService authenticationService;
-
-    private final UserRepository userRepository;
-    private final VerificationTokenRepository verificationTokenRepository;
+    private final SeatService seatService;
+    private final NameAvailabilityIndex nameAvailabilityIndex;
+    private final RFIDIndex rfidIndex;
+    private final LiveCounterService liveCounterService;
+    private final UserService userService;
+    private final JobLeases jobLeases;
+    private final MailOutbox mailOutbox;
+    private final BulkMailer bulkMailer;
 
     public ScheduledTasks(OrderRepository orderRepository, OrderService orderService,
-                          AuthenticationService authenticationService,
-                          VerificationTokenRepository verificationTokenRepository, UserRepository userRepository) {
+                          AuthenticationService authenticationService, SeatService seatService,
+                          UserService userService, NameAvailabilityIndex nameAvailabilityIndex, RFIDIndex rfidIndex,
+                          LiveCounterService liveCounterService, JobLeases jobLeases, MailOutbox mailOutbox,
+                          BulkMailer bulkMailer) {
         this.orderRepository = orderRepository;
         this.orderService = orderService;
         this.authenticationService = authenticationService;
-        this.userRepository = userRepository;
-        this.verificationTokenRepository = verificationTokenRepository;
+        this.seatService = seatService;
+        this.userService = userService;
+        this.nameAvailabilityIndex = nameAvailabilityIndex;
+        this.rfidIndex = rfidIndex;
+        this.liveCounterService = liveCounterService;
+        this.jobLeases = jobLeases;
+        this.mailOutbox = mailOutbox;
+        this.bulkMailer = bulkMailer;
     }
 
 
     @Scheduled(fixedRate = ORDER_EXPIRY_CHECK_INTERVAL_SECONDS * 1000)
     public void ExpireOrders() {
+        jobLeases.runExclusively("ExpireOrders", Duration.ofMinutes(1),
+                Duration.ofSeconds(ORDER_EXPIRY_CHECK_INTERVAL_SECONDS - 1), this::expireOrders);
+    }
+
+    private void expireOrders() {
         log.debug("Expiring orders");
         LocalDateTime expireBeforeDate = LocalDateTime.now().minusMinutes(ORDER_STAY_ALIVE_MINUTES);
 
@@ -82,11 +121,63 @@ public void ExpireOrders() {
 
     @Scheduled(fixedRate = USER_CLEANUP_CHECK_INTERVAL_MINUTES * 60 * 1000)
     public void CleanUpUsers() {
-        LocalDateTime now = LocalDateTime.now();
-        List<VerificationToken> allExpiredVerificationTokens =
-                verificationTokenRepository.findAllByExpiryDateBefore(now);
-        allExpiredVerificationTokens.stream().filter((verificationToken) -> !verificationToken.isUsed())
-                .forEach(this::handleExpiredVerificationToken);
+        jobLeases.runExclusively("CleanUpUsers", Duration.ofMinutes(10),
+                Duration.ofMinutes(USER_CLEANUP_CHECK_INTERVAL_MINUTES - 5), this::cleanUpUsers);
+    }
+
+    private void cleanUpUsers() {
+        long start = System.nanoTime();
+        int purged = userService.purgeUnverifiedUsers(LocalDateTime.now());
+        long duration = System.nanoTime() - start;
+
+        Metrics.counter("a5l.users.purged").increment(purged);
+        Metrics.timer("a5l.users.purge").record(duration, TimeUnit.NANOSECONDS);
+        if (purged > 0) {
+            log.info("Removed {} unverified users in {} ms", purged, TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+    }
+
+    @Scheduled(fixedRate = SEAT_HOLD_EXPIRY_CHECK_INTERVAL_SECONDS * 1000)
+    public void ExpireSeatHolds() {
+        seatService.expireSeatHolds();
+    }
+
+    @Scheduled(initialDelay = NAME_INDEX_RELOAD_INTERVAL_MINUTES * 60 * 1000,
+            fixedRate = NAME_INDEX_RELOAD_INTERVAL_MINUTES * 60 * 1000)
+    public void ReloadNameIndex() {
+        nameAvailabilityIndex.reload();
+    }
+
+    @Scheduled(initialDelay = RFID_INDEX_RELOAD_INTERVAL_MINUTES * 60 * 1000,
+            fixedRate = RFID_INDEX_RELOAD_INTERVAL_MINUTES * 60 * 1000)
+    public void ReloadRFIDIndex() {
+        rfidIndex.reload();
+    }
+
+    @Scheduled(initialDelay = LIVE_COUNTERS_RELOAD_INTERVAL_MINUTES * 60 * 1000,
+            fixedRate = LIVE_COUNTERS_RELOAD_INTERVAL_MINUTES * 60 * 1000)
+    public void ReloadLiveCounters() {
+        liveCounterService.reload();
+    }
+
+    @Scheduled(fixedDelay = MAIL_OUTBOX_DRAIN_INTERVAL_SECONDS * 1000)
+    public void DrainMailOutbox() {
+        jobLeases.runExclusively("DrainMailOutbox", Duration.ofMinutes(1), Duration.ZERO, mailOutbox::drain);
+    }
+
+    // Not leased, every node confirms its own jobs
+    @Scheduled(initialDelay = BULK_MAIL_HEARTBEAT_INTERVAL_SECONDS * 1000,
+            fixedRate = BULK_MAIL_HEARTBEAT_INTERVAL_SECONDS * 1000)
+    public void BulkMailHeartbeat() {
+        bulkMailer.heartbeat();
+    }
+
+    @Scheduled(cron = "0 30 4 * * *")
+    public void PurgeMailOutbox() {
+        jobLeases.runExclusively("PurgeMailOutbox", Duration.ofMinutes(10), Duration.ofHours(1), () -> {
+            int purged = mailOutbox.purgeSent(LocalDateTime.now().minusDays(MAIL_OUTBOX_KEEP_SENT_DAYS));
+            log.info("Removed {} sent mails from the outbox", purged);
+        });
     }
 
     private static Predicate<Order> isExpired() {
@@ -94,13 +185,10 @@ private static Predicate<Order> isExpired() {
                 o.getStatus().equals(OrderStatus.EXPIRED) || o.getStatus().equals(OrderStatus.CANCELLED);
     }
 
-    private void handleExpiredVerificationToken(VerificationToken verificationToken) {
-        verificationTokenRepository.delete(verificationToken);
-        userRepository.delete(verificationToken.getUser());
-    }
-
+    // Every start clears the tokens, the lease only keeps nodes that start together from doing it at the same time
     @EventListener(ApplicationStartedEvent.class)
     public void removeTokens() {
-        authenticationService.removeAllAuthTokens();
+        jobLeases.runExclusively("RemoveTokens", Duration.ofMinutes(1), Duration.ZERO,
+                authenticationService::removeAllAuthTokens);
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.export;
+
+import ch.wisv.areafiftylan.seats.model.SeatExportRow;
+import ch.wisv.areafiftylan.users.model.UserExportRow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the export as a single CSV table. Users, seats and teams share the table, the first column tells them apart
+ * and columns that don't apply to a record are left empty. Lists are separated by spaces.
+ */
+class CsvExportWriter implements ExportWriter {
+
+    private static final String[] HEADER =
+            { "type", "id", "email", "passwordHash", "displayname", "seat", "userId", "teamname", "captainId", "members" };
+
+    private final Writer out;
+
+    CsvExportWriter(Writer out) throws IOException {
+        this.out = out;
+        writeRow(HEADER);
+        out.flush();
+    }
+
+    @Override
+    public void startSection(String name) {
+    }
+
+    @Override
+    public void endSection() {
+    }
+
+    @Override
+    public void writeUser(UserExportRow user, List<String> seats) throws IOException {
+        writeRow("user", String.valueOf(user.getUserId()), user.getEmail(), user.getPasswordHash(),
+                user.getDisplayName(), seats == null ? null : String.join(" ", seats), null, null, null, null);
+    }
+
+    @Override
+    public void writeSeat(SeatExportRow seat) throws IOException {
+        // The userId stays empty for a seat that was freed
+        writeRow("seat", null, null, null, null, seat.getSeatGroup() + seat.getSeatNumber(),
+                seat.getUserId() == null ? null : String.valueOf(seat.getUserId()), null, null, null);
+    }
+
+    @Override
+    public void writeTeam(Long teamId, String teamName, Long captainId, List<Long> members) throws IOException {
+        writeRow("team", String.valueOf(teamId), null, null, null, null, null, teamName, String.valueOf(captainId),
+                members.stream().map(String::valueOf).collect(Collectors.joining(" ")));
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The response stream underneath is closed by the container
+        out.flush();
+    }
+
+    private void writeRow(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeField(fields[i]);
+        }
+        out.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        out.write(field.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,70 @@
+package ch.wisv.areafiftylan.utils.export;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * This controller creates an export endpoint, meant for manual single-use export for use in different system.
+ * No production functionality should depend on this endpoint as it may change based on different requirements
+ * <p>
+ * The format is picked from the Accept header: JSON by default, NDJSON or CSV when asked for. Every response carries a
+ * cursor in the X-Export-Cursor header, passing it as the since parameter returns only what changed in the meantime.
+ * <p>
+ * An export since a cursor is not a complete replacement for a full export, clients should still run one periodically:
+ * <ul>
+ * <li>Removed rows aren't reported. This covers seats removed from a seat group, users that lost their last valid
+ * ticket and deleted teams.</li>
+ * <li>Rows are stamped by the clock of the node that changed them, while the cursor comes from the node serving the
+ * export. The cursor lies a minute before the export started, so a change is only missed when it was committed more
+ * than a minute after it was stamped, or when the clocks of the nodes are more than a minute apart.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/export")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+    public static final String CURSOR_HEADER = "X-Export-Cursor";
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportJson(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return export(ExportFormat.JSON, since);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNdjson(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return export(ExportFormat.NDJSON, since);
+    }
+
+    @GetMapping(produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return export(ExportFormat.CSV, since);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(ExportFormat format, LocalDateTime since) {
+        LocalDateTime cursor = exportService.getCursor();
+        StreamingResponseBody body = out -> exportService.writeExport(out, format, since);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(CURSOR_HEADER, cursor.toString())
+                .body(body);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+public interface ExportService {
+
+    /**
+     * Write the users with a valid ticket, their seats and all teams. Rows are read from streamed queries and written
+     * as they come in, so memory use doesn't grow with the number of attendees.
+     * <p>
+     * With a cursor, only the users, seats and teams that changed after it are written. Seats are then written as
+     * records of their own, so seats that were freed show up as well. Seats that were removed, users that lost their
+     * last valid ticket and deleted teams are only left out of the next full export.
+     *
+     * @param out    The stream to write the export to
+     * @param format The format to write the export in
+     * @param since  A cursor from {@link #getCursor()} of an earlier export, or null for a full export
+     * @throws IOException If writing fails
+     */
+    void writeExport(OutputStream out, ExportFormat format, LocalDateTime since) throws IOException;
+
+    /**
+     * Get the cursor to pass to the next export, so it contains everything that changed after this one started. Has
+     * to be taken before the export itself is written.
+     *
+     * @return The cursor for the next export
+     */
+    LocalDateTime getCursor();
+}
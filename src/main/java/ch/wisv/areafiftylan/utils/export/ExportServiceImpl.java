@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.export;
+
+import ch.wisv.areafiftylan.seats.model.SeatExportRow;
+import ch.wisv.areafiftylan.seats.service.SeatRepository;
+import ch.wisv.areafiftylan.teams.model.TeamMemberRow;
+import ch.wisv.areafiftylan.teams.service.TeamRepository;
+import ch.wisv.areafiftylan.users.model.UserExportRow;
+import ch.wisv.areafiftylan.users.service.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Service
+public class ExportServiceImpl implements ExportService {
+
+    /**
+     * Changes are stamped when they are flushed, but only visible to the export once they are committed. The cursor
+     * lies this far before the start of the export, so changes that were still in flight end up in the next one. The
+     * stamps and the cursor come from the clocks of the nodes, so this also has to cover how far those drift apart.
+     */
+    private static final Duration CURSOR_OVERLAP = Duration.ofMinutes(1);
+
+    private static final int CHANGED_BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final SeatRepository seatRepository;
+    private final TeamRepository teamRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExportServiceImpl(UserRepository userRepository, SeatRepository seatRepository,
+                             TeamRepository teamRepository, ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.seatRepository = seatRepository;
+        this.teamRepository = teamRepository;
+        this.objectMapper = objectMapper;
+        // Streamed queries need an open transaction for as long as they are read
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public void writeExport(OutputStream out, ExportFormat format, LocalDateTime since) throws IOException {
+        try (ExportWriter writer = openWriter(out, format)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        if (format == ExportFormat.JSON && since == null) {
+                            // The full JSON export keeps its original shape, with the seats listed per user
+                            writeUsersWithSeats(writer);
+                        } else {
+                            writeUsers(writer, since);
+                            writeSeats(writer, since);
+                        }
+                        writeTeams(writer, since);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+        }
+    }
+
+    @Override
+    public LocalDateTime getCursor() {
+        return LocalDateTime.now().minus(CURSOR_OVERLAP);
+    }
+
+    private ExportWriter openWriter(OutputStream out, ExportFormat format) throws IOException {
+        switch (format) {
+            case NDJSON:
+                return new JsonExportWriter(objectMapper.getFactory().createGenerator(out), true);
+            case CSV:
+                return new CsvExportWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            default:
+                return new JsonExportWriter(objectMapper.getFactory().createGenerator(out), false);
+        }
+    }
+
+    private void writeUsersWithSeats(ExportWriter writer) throws IOException {
+        writer.startSection("users");
+        // Both streams are ordered by user, so the seats of each user can be picked up while walking the users
+        try (Stream<UserExportRow> users = userRepository.streamExportUsers();
+             Stream<SeatExportRow> seats = seatRepository.streamExportSeats()) {
+            PeekingIterator<SeatExportRow> seatRows = Iterators.peekingIterator(seats.iterator());
+            Iterator<UserExportRow> userRows = users.iterator();
+            while (userRows.hasNext()) {
+                UserExportRow user = userRows.next();
+                // Seats of users without a valid ticket are skipped
+                while (seatRows.hasNext() && seatRows.peek().getUserId() < user.getUserId()) {
+                    seatRows.next();
+                }
+                List<String> userSeats = new ArrayList<>();
+                while (seatRows.hasNext() && seatRows.peek().getUserId().equals(user.getUserId())) {
+                    SeatExportRow seat = seatRows.next();
+                    userSeats.add(seat.getSeatGroup() + seat.getSeatNumber());
+                }
+                writer.writeUser(user, userSeats);
+            }
+        }
+        writer.endSection();
+    }
+
+    private void writeUsers(ExportWriter writer, LocalDateTime since) throws IOException {
+        writer.startSection("users");
+        if (since == null) {
+            try (Stream<UserExportRow> users = userRepository.streamExportUsers()) {
+                Iterator<UserExportRow> userRows = users.iterator();
+                while (userRows.hasNext()) {
+                    writer.writeUser(userRows.next(), null);
+                }
+            }
+        } else {
+            for (List<Long> userIds : changedIds(since, userRepository::findIdsUpdatedSince,
+                    userRepository::findIdsWithProfileUpdatedSince,
+                    userRepository::findOwnerIdsWithTicketUpdatedSince)) {
+                for (UserExportRow user : userRepository.findExportUsersByIdIn(userIds)) {
+                    writer.writeUser(user, null);
+                }
+            }
+        }
+        writer.endSection();
+    }
+
+    private void writeSeats(ExportWriter writer, LocalDateTime since) throws IOException {
+        writer.startSection("seats");
+        if (since == null) {
+            try (Stream<SeatExportRow> seats = seatRepository.streamExportSeats()) {
+                Iterator<SeatExportRow> seatRows = seats.iterator();
+                while (seatRows.hasNext()) {
+                    writer.writeSeat(seatRows.next());
+                }
+            }
+        } else {
+            for (List<Long> seatIds : changedIds(since, seatRepository::findIdsUpdatedSince,
+                    seatRepository::findIdsWithTicketUpdatedSince)) {
+                for (SeatExportRow seat : seatRepository.findExportSeatsByIdIn(seatIds)) {
+                    writer.writeSeat(seat);
+                }
+            }
+        }
+        writer.endSection();
+    }
+
+    /**
+     * Each table has its own change stamp, a single query checking all of them can't use their indexes. The ids are
+     * looked up per table instead, merged in the order of the export and handed out in batches to read the rows by.
+     */
+    @SafeVarargs
+    private static Iterable<List<Long>> changedIds(LocalDateTime since,
+                                                   Function<LocalDateTime, List<Long>>... changedSince) {
+        SortedSet<Long> ids = new TreeSet<>();
+        for (Function<LocalDateTime, List<Long>> changed : changedSince) {
+            ids.addAll(changed.apply(since));
+        }
+        return Iterables.partition(ids, CHANGED_BATCH_SIZE);
+    }
+
+    private void writeTeams(ExportWriter writer, LocalDateTime since) throws IOException {
+        writer.startSection("teams");
+        // The rows are ordered by team, so each team is complete once the next one starts
+        try (Stream<TeamMemberRow> rows = since == null ?
+                teamRepository.streamAllTeamMembers() : teamRepository.streamTeamMembersChangedSince(since)) {
+            TeamMemberRow team = null;
+            List<Long> members = new ArrayList<>();
+            Iterator<TeamMemberRow> memberRows = rows.iterator();
+            while (memberRows.hasNext()) {
+                TeamMemberRow row = memberRows.next();
+                if (team != null && !team.getTeamId().equals(row.getTeamId())) {
+                    writer.writeTeam(team.getTeamId(), team.getTeamName(), team.getCaptainId(), members);
+                    members = new ArrayList<>();
+                }
+                team = row;
+                members.add(row.getMemberId());
+            }
+            if (team != null) {
+                writer.writeTeam(team.getTeamId(), team.getTeamName(), team.getCaptainId(), members);
+            }
+        }
+        writer.endSection();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.export;
+
+import ch.wisv.areafiftylan.seats.model.SeatExportRow;
+import ch.wisv.areafiftylan.users.model.UserExportRow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the records of an export in one of the {@link ExportFormat}s. Records are grouped in sections of one kind,
+ * formats that don't group records ignore the sections.
+ */
+interface ExportWriter extends Closeable {
+
+    void startSection(String name) throws IOException;
+
+    void endSection() throws IOException;
+
+    /**
+     * @param user  The user to write
+     * @param seats The seats of the user, or null if the seats are written as records of their own
+     */
+    void writeUser(UserExportRow user, List<String> seats) throws IOException;
+
+    void writeSeat(SeatExportRow seat) throws IOException;
+
+    void writeTeam(Long teamId, String teamName, Long captainId, List<Long> members) throws IOException;
+
+    /**
+     * Completes the export, after this the writer only has to be closed.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.export;
+
+import ch.wisv.areafiftylan.seats.model.SeatExportRow;
+import ch.wisv.areafiftylan.users.model.UserExportRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the export as a single JSON document with an array per section, or as NDJSON with one object per line. On
+ * NDJSON lines the kind of record is in the "type" field.
+ */
+class JsonExportWriter implements ExportWriter {
+
+    private final JsonGenerator json;
+    private final boolean delimited;
+
+    JsonExportWriter(JsonGenerator json, boolean delimited) throws IOException {
+        this.json = json;
+        this.delimited = delimited;
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (!delimited) {
+            json.writeStartObject();
+        }
+        // Start the response right away, instead of after the first buffer is full
+        json.flush();
+    }
+
+    @Override
+    public void startSection(String name) throws IOException {
+        if (!delimited) {
+            json.writeArrayFieldStart(name);
+        }
+    }
+
+    @Override
+    public void endSection() throws IOException {
+        if (!delimited) {
+            json.writeEndArray();
+        }
+    }
+
+    @Override
+    public void writeUser(UserExportRow user, List<String> seats) throws IOException {
+        startRecord("user");
+        json.writeNumberField("userId", user.getUserId());
+        json.writeStringField("email", user.getEmail());
+        json.writeStringField("passwordHash", user.getPasswordHash());
+        json.writeStringField("displayname", user.getDisplayName());
+        if (seats != null) {
+            json.writeArrayFieldStart("seat");
+            for (String seat : seats) {
+                json.writeString(seat);
+            }
+            json.writeEndArray();
+        }
+        endRecord();
+    }
+
+    @Override
+    public void writeSeat(SeatExportRow seat) throws IOException {
+        startRecord("seat");
+        json.writeStringField("seat", seat.getSeatGroup() + seat.getSeatNumber());
+        // Null for a seat that was freed
+        json.writeObjectField("userId", seat.getUserId());
+        endRecord();
+    }
+
+    @Override
+    public void writeTeam(Long teamId, String teamName, Long captainId, List<Long> members) throws IOException {
+        startRecord("team");
+        json.writeNumberField("teamId", teamId);
+        json.writeStringField("teamname", teamName);
+        json.writeNumberField("captainId", captainId);
+        json.writeArrayFieldStart("members");
+        for (Long member : members) {
+            json.writeNumber(member);
+        }
+        json.writeEndArray();
+        endRecord();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!delimited) {
+            json.writeEndObject();
+        }
+        json.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    private void startRecord(String type) throws IOException {
+        json.writeStartObject();
+        if (delimited) {
+            json.writeStringField("type", type);
+        }
+    }
+
+    private void endRecord() throws IOException {
+        json.writeEndObject();
+        if (delimited) {
+            json.writeRaw('\n');
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.lease;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure a scheduled job runs on only one node per interval, using a lease row per job in the database. A node
+ * takes the lease for the time to live before running the job and renews it while the job is still running. Once
+ * done, the lease is kept for at least the minimum hold, so the other nodes skip the job for the rest of the interval.
+ * Expiry is based on the clock of each node, so the minimum hold should leave some room for clock drift.
+ */
+@Component
+@Slf4j
+public class JobLeases {
+
+    @Value("${a5l.scheduling.leases:true}")
+    private boolean ENABLED;
+
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+
+    // Leases are committed on their own, also when a job is started from within a transaction
+    private final TransactionTemplate transactionTemplate;
+
+    private final String owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final ScheduledExecutorService renewals = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("lease-renewal").setDaemon(true).build());
+
+    public JobLeases(SchedulerLeaseRepository schedulerLeaseRepository, PlatformTransactionManager transactionManager) {
+        this.schedulerLeaseRepository = schedulerLeaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Run a job, unless another node holds its lease.
+     *
+     * @param job        The name of the job, shared by all nodes
+     * @param timeToLive How long the lease is held without being renewed, renewal happens every third of this
+     * @param minHold    How long after the start of the job the lease is held at least
+     * @param task       The job itself
+     * @return True if the job ran on this node
+     */
+    public boolean runExclusively(String job, Duration timeToLive, Duration minHold, Runnable task) {
+        if (!ENABLED) {
+            task.run();
+            return true;
+        }
+
+        LocalDateTime start = LocalDateTime.now();
+        if (!acquire(job, start, start.plus(timeToLive))) {
+            log.debug("Skipping {}, the lease is held by another node", job);
+            return false;
+        }
+
+        long renewalMillis = Math.max(timeToLive.toMillis() / 3, 1);
+        ScheduledFuture<?> renewal = renewals.scheduleAtFixedRate(() -> renew(job, timeToLive), renewalMillis,
+                renewalMillis, TimeUnit.MILLISECONDS);
+        long startNanos = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            renewal.cancel(false);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            LocalDateTime until = start.plus(minHold);
+            release(job, until.isAfter(LocalDateTime.now()) ? until : LocalDateTime.now(), start, durationMs);
+        }
+        return true;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private boolean acquire(String job, LocalDateTime now, LocalDateTime until) {
+        try {
+            return transactionTemplate.execute(status -> {
+                if (schedulerLeaseRepository.acquire(job, owner, now, until) > 0) {
+                    return true;
+                }
+                if (schedulerLeaseRepository.existsById(job)) {
+                    return false;
+                }
+                schedulerLeaseRepository.saveAndFlush(new SchedulerLease(job, owner, until));
+                return true;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node created the lease at the same moment
+            return false;
+        }
+    }
+
+    private void renew(String job, Duration timeToLive) {
+        try {
+            Integer renewed = transactionTemplate.execute(status ->
+                    schedulerLeaseRepository.renew(job, owner, LocalDateTime.now().plus(timeToLive)));
+            if (renewed == null || renewed == 0) {
+                log.warn("Lost the lease on {} while it was running", job);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to renew the lease on {}", job, e);
+        }
+    }
+
+    private void release(String job, LocalDateTime until, LocalDateTime lastRunAt, long durationMs) {
+        try {
+            transactionTemplate.execute(status ->
+                    schedulerLeaseRepository.release(job, owner, until, lastRunAt, durationMs));
+        } catch (RuntimeException e) {
+            log.warn("Unable to release the lease on {}", job, e);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewals.shutdownNow();
+    }
+}
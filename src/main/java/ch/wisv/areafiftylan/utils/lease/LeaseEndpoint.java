@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.lease;
+
+import com.google.common.collect.ImmutableMap;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint listing the leases on scheduled jobs: which node holds them, until when, and how long the last run
+ * took.
+ */
+@Component
+@Endpoint(id = "leases")
+public class LeaseEndpoint {
+
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+    private final JobLeases jobLeases;
+
+    public LeaseEndpoint(SchedulerLeaseRepository schedulerLeaseRepository, JobLeases jobLeases) {
+        this.schedulerLeaseRepository = schedulerLeaseRepository;
+        this.jobLeases = jobLeases;
+    }
+
+    @ReadOperation
+    public Map<String, Object> leases() {
+        return ImmutableMap.of("node", jobLeases.getOwner(),
+                "leases", schedulerLeaseRepository.findAll(Sort.by("name")));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.lease;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * Lease on a scheduled job, shared by all nodes through the database. The node in owner may run the job until
+ * lockedUntil, after which any node can take it over.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class SchedulerLease {
+
+    @Id
+    private String name;
+
+    private String owner;
+
+    private LocalDateTime lockedUntil;
+
+    private LocalDateTime lastRunAt;
+
+    private Long lastDurationMs;
+
+    SchedulerLease(String name, String owner, LocalDateTime lockedUntil) {
+        this.name = name;
+        this.owner = owner;
+        this.lockedUntil = lockedUntil;
+    }
+
+    public boolean isHeld() {
+        return lockedUntil != null && lockedUntil.isAfter(LocalDateTime.now());
+    }
+}
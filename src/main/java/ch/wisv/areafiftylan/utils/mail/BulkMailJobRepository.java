@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BulkMailJobRepository extends JpaRepository<BulkMailJob, Long> {
+
+    List<BulkMailJob> findAllByOrderByIdDesc(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update BulkMailJob j set j.heartbeatAt = :heartbeatAt where j.owner = :owner and j.status in :unfinished")
+    int heartbeat(@Param("owner") String owner, @Param("unfinished") Collection<BulkMailJobStatus> unfinished,
+                  @Param("heartbeatAt") LocalDateTime heartbeatAt);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update BulkMailJob j set j.status = :status, j.lastError = :lastError, j.finishedAt = :finishedAt " +
+            "where j.status in :unfinished and j.heartbeatAt < :heartbeatBefore")
+    int finishAbandoned(@Param("unfinished") Collection<BulkMailJobStatus> unfinished,
+                        @Param("heartbeatBefore") LocalDateTime heartbeatBefore,
+                        @Param("status") BulkMailJobStatus status, @Param("lastError") String lastError,
+                        @Param("finishedAt") LocalDateTime finishedAt);
+}
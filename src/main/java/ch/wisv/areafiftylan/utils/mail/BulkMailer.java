@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import ch.wisv.areafiftylan.teams.model.Team;
+import ch.wisv.areafiftylan.teams.service.TeamRepository;
+import ch.wisv.areafiftylan.users.model.MailRecipient;
+import ch.wisv.areafiftylan.users.service.UserRepository;
+import ch.wisv.areafiftylan.utils.lease.JobLeases;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import net.logstash.logback.argument.StructuredArguments;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Sends one mail to many recipients in the background, one job at a time. Recipients are read from the database page
+ * by page, each message is assembled from the pre-rendered {@link MailTemplates}, and messages are sent in batches that
+ * share a single SMTP connection, throttled to a configurable rate. Progress is stored in a {@link BulkMailJob}.
+ * Jobs are only queued in memory on the node that started them. Each node confirms its unfinished jobs with a
+ * heartbeat, jobs whose node stopped doing so are marked as failed.
+ */
+@Component
+@Slf4j
+public class BulkMailer {
+
+    private static final int PAGE_SIZE = 500;
+    private static final int BATCH_SIZE = 50;
+    private static final int QUEUE_SIZE = 10;
+    // Several missed heartbeats, so a busy node doesn't lose its jobs
+    private static final Duration HEARTBEAT_TIMEOUT = Duration.ofMinutes(5);
+    private static final List<BulkMailJobStatus> UNFINISHED =
+            Arrays.asList(BulkMailJobStatus.QUEUED, BulkMailJobStatus.RUNNING);
+
+    @Value("${a5l.mail.sender}")
+    private String sender;
+
+    @Value("${a5l.mail.bulk.ratePerSecond:10}")
+    private double RATE_PER_SECOND;
+
+    private final JavaMailSender mailSender;
+    private final MailTemplates mailTemplates;
+    private final BulkMailJobRepository bulkMailJobRepository;
+    private final UserRepository userRepository;
+    private final TeamRepository teamRepository;
+    private final String owner;
+
+    private final ThreadPoolExecutor runner = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            new ThreadFactoryBuilder().setNameFormat("bulk-mail").setDaemon(true).build());
+
+    public BulkMailer(JavaMailSender mailSender, MailTemplates mailTemplates,
+                      BulkMailJobRepository bulkMailJobRepository, UserRepository userRepository,
+                      TeamRepository teamRepository, JobLeases jobLeases) {
+        this.mailSender = mailSender;
+        this.mailTemplates = mailTemplates;
+        this.bulkMailJobRepository = bulkMailJobRepository;
+        this.userRepository = userRepository;
+        this.teamRepository = teamRepository;
+        this.owner = jobLeases.getOwner();
+    }
+
+    /**
+     * Confirm the unfinished jobs of this node are still being worked on, and fail the jobs of nodes that stopped
+     * confirming theirs. Those nodes went down or restarted, nothing will pick their jobs up anymore.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        bulkMailJobRepository.heartbeat(owner, UNFINISHED, now);
+        int interrupted = bulkMailJobRepository.finishAbandoned(UNFINISHED, now.minus(HEARTBEAT_TIMEOUT),
+                BulkMailJobStatus.FAILED, "Interrupted by restart", now);
+        if (interrupted > 0) {
+            log.warn("Marked {} interrupted bulk mails as failed",
+                    StructuredArguments.v("bulk_mail_count", interrupted));
+        }
+    }
+
+    public BulkMailJob mailAllUsers(MailDTO mailDTO) {
+        return start("All users", mailDTO, (int) userRepository.count(), userRepository::findMailRecipients);
+    }
+
+    public BulkMailJob mailTeam(Team team, MailDTO mailDTO) {
+        return start("Team " + team.getTeamName(), mailDTO, team.getSize(),
+                (afterId, page) -> teamRepository.findMailRecipients(team.getId(), afterId, page));
+    }
+
+    public Optional<BulkMailJob> getJob(Long jobId) {
+        return bulkMailJobRepository.findById(jobId);
+    }
+
+    public List<BulkMailJob> getRecentJobs(int limit) {
+        return bulkMailJobRepository.findAllByOrderByIdDesc(PageRequest.of(0, limit));
+    }
+
+    private BulkMailJob start(String target, MailDTO mailDTO, int recipients,
+                              BiFunction<Long, Pageable, List<MailRecipient>> pages) {
+        BulkMailJob job = bulkMailJobRepository.save(new BulkMailJob(target, mailDTO.getSubject(), recipients, owner));
+        try {
+            runner.execute(() -> run(job, mailDTO, pages));
+        } catch (RejectedExecutionException e) {
+            job.setStatus(BulkMailJobStatus.FAILED);
+            job.setLastError("Too many bulk mails waiting, try again later");
+            job.setFinishedAt(LocalDateTime.now());
+            return bulkMailJobRepository.save(job);
+        }
+        return job;
+    }
+
+    private void run(BulkMailJob job, MailDTO mailDTO, BiFunction<Long, Pageable, List<MailRecipient>> pages) {
+        job.setStatus(BulkMailJobStatus.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        job.setHeartbeatAt(job.getStartedAt());
+        bulkMailJobRepository.save(job);
+
+        try {
+            String subject = "[Area FiftyLAN] " + mailDTO.getSubject();
+            RateLimiter rateLimiter = RateLimiter.create(RATE_PER_SECOND);
+
+            long afterId = 0;
+            List<MailRecipient> page;
+            do {
+                page = pages.apply(afterId, PageRequest.of(0, PAGE_SIZE));
+                for (List<MailRecipient> batch : Lists.partition(page, BATCH_SIZE)) {
+                    rateLimiter.acquire(batch.size());
+                    sendBatch(job, batch, subject, mailDTO.getMessage());
+                }
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                    job.setHeartbeatAt(LocalDateTime.now());
+                    bulkMailJobRepository.save(job);
+                }
+            } while (page.size() == PAGE_SIZE);
+            job.setStatus(BulkMailJobStatus.FINISHED);
+        } catch (RuntimeException e) {
+            log.error("Bulk mail {} stopped", StructuredArguments.v("bulk_mail_id", job.getId()), e);
+            job.setStatus(BulkMailJobStatus.FAILED);
+            job.setLastError(errorMessage(e));
+        }
+        job.setFinishedAt(LocalDateTime.now());
+        bulkMailJobRepository.save(job);
+        log.info("Bulk mail {} done, {} sent, {} failed", StructuredArguments.v("bulk_mail_id", job.getId()),
+                job.getSent(), job.getFailed());
+    }
+
+    private void sendBatch(BulkMailJob job, List<MailRecipient> batch, String subject, String body) {
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (MailRecipient recipient : batch) {
+            try {
+                MimeMessage mimeMessage = mailSender.createMimeMessage();
+                MimeMessageHelper message = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+                message.setSubject(subject);
+                message.setFrom(sender);
+                message.setTo(recipient.getEmail());
+                message.setText(mailTemplates.renderMail(formatName(recipient), body), true);
+                messages.add(mimeMessage);
+            } catch (MessagingException e) {
+                job.setFailed(job.getFailed() + 1);
+                job.setLastError(errorMessage(e));
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            // All messages of a batch go over the same SMTP connection
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            job.setSent(job.getSent() + messages.size());
+        } catch (MailSendException e) {
+            int failed = e.getFailedMessages().isEmpty() ? messages.size() : e.getFailedMessages().size();
+            job.setSent(job.getSent() + messages.size() - failed);
+            job.setFailed(job.getFailed() + failed);
+            job.setLastError(errorMessage(e));
+        } catch (MailException e) {
+            job.setFailed(job.getFailed() + messages.size());
+            job.setLastError(errorMessage(e));
+        }
+    }
+
+    private static String formatName(MailRecipient recipient) {
+        if (recipient.getFirstName() != null && recipient.getLastName() != null) {
+            return String.format(" %s %s", recipient.getFirstName(), recipient.getLastName());
+        }
+        return "";
+    }
+
+    private static String errorMessage(Exception e) {
+        String error = Strings.nullToEmpty(Throwables.getRootCause(e).getMessage());
+        return error.substring(0, Math.min(error.length(), 1000));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+}
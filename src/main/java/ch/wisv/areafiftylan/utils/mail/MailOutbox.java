@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import net.logstash.logback.argument.StructuredArguments;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for all outgoing mail. Mails are stored together with the change they are about, so requests
+ * never wait for the mail server, and are sent by a bounded pool of workers. A mail that fails to send is retried with
+ * an increasing delay, after the last attempt it is kept with status FAILED until an admin retries it.
+ */
+@Component
+@Slf4j
+public class MailOutbox {
+
+    private static final int WORKERS = 4;
+    private static final int QUEUE_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long RETRY_DELAY_SECONDS = 30;
+    private static final long CLAIM_MINUTES = 10;
+
+    @Value("${a5l.mail.sender}")
+    private String defaultSender;
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            new ThreadFactoryBuilder().setNameFormat("mail-outbox-%d").setDaemon(true).build());
+
+    public MailOutbox(MailOutboxRepository mailOutboxRepository, JavaMailSender mailSender,
+                      PlatformTransactionManager transactionManager) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Store a mail in the outbox. This joins the current transaction, so the mail is only sent if it commits.
+     *
+     * @param sender The From address, or null for the default sender
+     */
+    public void enqueue(MailCategory category, String recipient, String sender, String subject, String content,
+                        boolean html) {
+        mailOutboxRepository.save(new OutboxMail(category, recipient, sender, subject, content, html));
+    }
+
+    /**
+     * Hand the mails that are due to the workers, as many as fit in their queue.
+     *
+     * @return The number of mails handed to the workers
+     */
+    public int drain() {
+        int capacity = workers.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMail> due = transactionTemplate.execute(status -> {
+            List<OutboxMail> mails = mailOutboxRepository.findDue(MailDeliveryStatus.PENDING, now,
+                    PageRequest.of(0, capacity));
+            if (!mails.isEmpty()) {
+                mailOutboxRepository.claim(mails.stream().map(OutboxMail::getId).collect(Collectors.toList()),
+                        now.plusMinutes(CLAIM_MINUTES));
+            }
+            return mails;
+        });
+
+        int submitted = 0;
+        for (OutboxMail mail : due) {
+            try {
+                workers.execute(() -> send(mail));
+                submitted++;
+            } catch (RejectedExecutionException e) {
+                // The rest is picked up again once the claim runs out
+                break;
+            }
+        }
+        return submitted;
+    }
+
+    public List<OutboxMail> getFailedMails(int limit) {
+        return mailOutboxRepository.findAllByStatusOrderByIdDesc(MailDeliveryStatus.FAILED, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Put a failed mail back in the outbox, it gets a fresh set of attempts.
+     *
+     * @return False if there is no failed mail with this id
+     */
+    public boolean retry(Long mailId) {
+        return mailOutboxRepository.findById(mailId).filter(mail -> mail.getStatus() == MailDeliveryStatus.FAILED)
+                .map(mail -> mailOutboxRepository.updateDelivery(mail.getId(), MailDeliveryStatus.PENDING, 0,
+                        LocalDateTime.now(), null, mail.getLastError()) > 0).orElse(false);
+    }
+
+    /**
+     * Remove sent mails from the outbox.
+     *
+     * @return The number of mails removed
+     */
+    public int purgeSent(LocalDateTime sentBefore) {
+        return mailOutboxRepository.deleteSentBefore(MailDeliveryStatus.SENT, sentBefore);
+    }
+
+    private void send(OutboxMail mail) {
+        try {
+            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            MimeMessageHelper message = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+            message.setSubject(mail.getSubject());
+            message.setFrom(Strings.isNullOrEmpty(mail.getSender()) ? defaultSender : mail.getSender());
+            message.setTo(mail.getRecipient());
+            message.setText(mail.getContent(), mail.isHtml());
+
+            mailSender.send(mimeMessage);
+        } catch (MessagingException | RuntimeException e) {
+            failed(mail, e);
+            return;
+        }
+        updateDelivery(mail, MailDeliveryStatus.SENT, null, LocalDateTime.now(), null);
+    }
+
+    private void failed(OutboxMail mail, Exception e) {
+        int attempts = mail.getAttempts() + 1;
+        String error = Strings.nullToEmpty(Throwables.getRootCause(e).getMessage());
+        error = error.substring(0, Math.min(error.length(), 1000));
+
+        if (attempts >= MAX_ATTEMPTS) {
+            log.error("Giving up on mail {} to {}", StructuredArguments.v("mail_id", mail.getId()),
+                    StructuredArguments.v("recipient", mail.getRecipient()), e);
+            updateDelivery(mail, MailDeliveryStatus.FAILED, null, null, error);
+        } else {
+            log.warn("Unable to send mail {}, attempt {}", StructuredArguments.v("mail_id", mail.getId()),
+                    StructuredArguments.v("attempt", attempts), e);
+            LocalDateTime nextAttemptAt = LocalDateTime.now().plusSeconds(RETRY_DELAY_SECONDS << (attempts - 1));
+            updateDelivery(mail, MailDeliveryStatus.PENDING, nextAttemptAt, null, error);
+        }
+    }
+
+    private void updateDelivery(OutboxMail mail, MailDeliveryStatus status, LocalDateTime nextAttemptAt,
+                                LocalDateTime sentAt, String error) {
+        int attempts = mail.getAttempts() + 1;
+        try {
+            mailOutboxRepository.updateDelivery(mail.getId(), status, attempts,
+                    nextAttemptAt != null ? nextAttemptAt : mail.getNextAttemptAt(), sentAt, error);
+        } catch (RuntimeException e) {
+            // The claim runs out and the mail is sent again, better twice than never
+            log.warn("Unable to store the delivery of mail {}", StructuredArguments.v("mail_id", mail.getId()), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<OutboxMail, Long> {
+
+    @Query("select m from OutboxMail m where m.status = :status and m.nextAttemptAt <= :now order by m.nextAttemptAt")
+    List<OutboxMail> findDue(@Param("status") MailDeliveryStatus status, @Param("now") LocalDateTime now,
+                             Pageable pageable);
+
+    List<OutboxMail> findAllByStatusOrderByIdDesc(MailDeliveryStatus status, Pageable pageable);
+
+    Optional<OutboxMail> findFirstByCategoryAndRecipientIgnoreCaseOrderByIdDesc(MailCategory category,
+                                                                               String recipient);
+
+    // Claimed mails are not due again until the claim runs out, in case the node sending them goes down
+    @Modifying
+    @Query("update OutboxMail m set m.nextAttemptAt = :claimedUntil where m.id in :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claimedUntil") LocalDateTime claimedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("update OutboxMail m set m.status = :status, m.attempts = :attempts, m.nextAttemptAt = :nextAttemptAt, " +
+            "m.sentAt = :sentAt, m.lastError = :lastError where m.id = :id")
+    int updateDelivery(@Param("id") Long id, @Param("status") MailDeliveryStatus status,
+                       @Param("attempts") int attempts, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                       @Param("sentAt") LocalDateTime sentAt, @Param("lastError") String lastError);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxMail m where m.status = :status and m.sentAt < :before")
+    int deleteSentBefore(@Param("status") MailDeliveryStatus status, @Param("before") LocalDateTime before);
+}
@@ -22,11 +22,16 @@
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.Optional;
 
 import static ch.wisv.areafiftylan.utils.ResponseEntityBuilder.createResponseEntity;
 
@@ -35,15 +40,20 @@
 public class MailRestController {
 
     @Autowired
-    public MailRestController(MailService mailService, UserService userService, TeamService teamService) {
+    public MailRestController(MailService mailService, UserService userService, TeamService teamService,
+                              MailOutbox mailOutbox, BulkMailer bulkMailer) {
         this.mailService = mailService;
         this.userService = userService;
         this.teamService = teamService;
+        this.mailOutbox = mailOutbox;
+        this.bulkMailer = bulkMailer;
     }
 
     private final MailService mailService;
     private final UserService userService;
     private final TeamService teamService;
+    private final MailOutbox mailOutbox;
+    private final BulkMailer bulkMailer;
 
     @PostMapping("/contact")
     ResponseEntity<?> sendContactForm(@Validated @RequestBody ContactMailDTO mailDTO) {
@@ -67,15 +77,65 @@ ResponseEntity<?> sendMailToUser(@PathVariable Long userId, @Validated @RequestB
     @PostMapping("/team/{teamId}")
     ResponseEntity<?> sendMailToTeam(@PathVariable Long teamId, @Validated @RequestBody MailDTO mailDTO) {
         Team team = teamService.getTeamById(teamId);
-        mailService.sendTemplateMailToTeam(team, mailDTO);
-
-        return createResponseEntity(HttpStatus.OK, "Mail successfully sent");
+        return bulkMailAccepted(bulkMailer.mailTeam(team, mailDTO));
     }
 
+    /**
+     * Mail all users. This takes a while, so the mail is sent in the background. Its progress can be followed at the
+     * returned location.
+     *
+     * @param mailDTO The subject and message of the mail
+     *
+     * @return The BulkMailJob sending the mail
+     */
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/users/all/YESREALLY")
     ResponseEntity<?> sendMailToAll(@Validated @RequestBody MailDTO mailDTO) {
-        mailService.sendTemplateMailToAll(userService.getAllUsers(), mailDTO);
-        return createResponseEntity(HttpStatus.OK, "Mail successfully sent");
+        return bulkMailAccepted(bulkMailer.mailAllUsers(mailDTO));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/jobs")
+    List<BulkMailJob> getBulkMailJobs(@RequestParam(defaultValue = "20") int limit) {
+        return bulkMailer.getRecentJobs(limit);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/jobs/{jobId}")
+    ResponseEntity<?> getBulkMailJob(@PathVariable Long jobId) {
+        Optional<BulkMailJob> job = bulkMailer.getJob(jobId);
+        if (job.isEmpty()) {
+            return createResponseEntity(HttpStatus.NOT_FOUND, "No bulk mail with id " + jobId);
+        }
+        return createResponseEntity(HttpStatus.OK, "Bulk mail " + job.get().getStatus(), job.get());
+    }
+
+    /**
+     * Get the most recent mails that could not be sent after all attempts.
+     *
+     * @param limit The maximum number of mails to return
+     *
+     * @return The failed mails, newest first
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/outbox/failed")
+    List<OutboxMail> getFailedMails(@RequestParam(defaultValue = "100") int limit) {
+        return mailOutbox.getFailedMails(limit);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/outbox/{mailId}/retry")
+    ResponseEntity<?> retryFailedMail(@PathVariable Long mailId) {
+        if (!mailOutbox.retry(mailId)) {
+            return createResponseEntity(HttpStatus.NOT_FOUND, "No failed mail with id " + mailId);
+        }
+        return createResponseEntity(HttpStatus.OK, "Mail queued again");
+    }
+
+    private ResponseEntity<?> bulkMailAccepted(BulkMailJob job) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.setLocation(ServletUriComponentsBuilder.fromCurrentContextPath().path("/mail/jobs/{id}")
+                .buildAndExpand(job.getId()).toUri());
+        return createResponseEntity(HttpStatus.ACCEPTED, httpHeaders, "Mail is being sent", job);
     }
 }
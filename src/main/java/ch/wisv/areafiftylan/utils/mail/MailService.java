@@ -18,21 +18,14 @@
 package ch.wisv.areafiftylan.utils.mail;
 
 import ch.wisv.areafiftylan.products.model.order.Order;
-import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.User;
 
-import java.util.Collection;
-
 public interface MailService {
 
     void sendMail(String recipientEmail, String recipientName, String subject, String message);
 
     void sendContactMail(String senderEmail, String subject, String message);
 
-    void sendTemplateMailToTeam(Team team, MailDTO mailDTO);
-
-    void sendTemplateMailToAll(Collection<User> users, MailDTO mailDTO);
-
     void sendTemplateMailToUser(User user, MailDTO mailDTO);
 
     void sendVerificationmail(User user, String url);
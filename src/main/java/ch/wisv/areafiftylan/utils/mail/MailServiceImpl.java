@@ -18,35 +18,25 @@
 package ch.wisv.areafiftylan.utils.mail;
 
 import ch.wisv.areafiftylan.products.model.order.Order;
-import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.Profile;
 import ch.wisv.areafiftylan.users.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
-import org.springframework.mail.MailPreparationException;
-import org.springframework.mail.MailSendException;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring5.SpringTemplateEngine;
 
-import javax.mail.MessagingException;
-import javax.mail.internet.MimeMessage;
-import java.util.Collection;
 import java.util.Locale;
 
 @SuppressWarnings("SpringJavaAutowiringInspection")
 @Service
 public class MailServiceImpl implements MailService {
 
-    private final JavaMailSender mailSender;
+    private final MailOutbox mailOutbox;
 
     private final SpringTemplateEngine templateEngine;
 
-    @Value("${a5l.mail.sender}")
-    String sender;
+    private final MailTemplates mailTemplates;
 
     @Value("${a5l.mail.contact}")
     String contact;
@@ -55,66 +45,35 @@ public class MailServiceImpl implements MailService {
     String year;
 
     @Autowired
-    public MailServiceImpl(JavaMailSender mailSender, SpringTemplateEngine templateEngine) {
-        this.mailSender = mailSender;
+    public MailServiceImpl(MailOutbox mailOutbox, SpringTemplateEngine templateEngine, MailTemplates mailTemplates) {
+        this.mailOutbox = mailOutbox;
         this.templateEngine = templateEngine;
+        this.mailTemplates = mailTemplates;
     }
 
-    private void sendMailWithContent(String recipientEmail, String subject, String content) {
-        // Prepare message using a Spring helper
-        MimeMessage mimeMessage = this.mailSender.createMimeMessage();
-        MimeMessageHelper message;
-
-        try {
-            message = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-            message.setSubject("[Area FiftyLAN] " + subject);
-            message.setFrom(sender);
-            message.setTo(recipientEmail);
-
-            // Create the HTML body using Thymeleaf
-            message.setText(content, true); // true = isHtml
-
-            // Send mail
-            this.mailSender.send(mimeMessage);
-        } catch (MessagingException e) {
-            throw new MailPreparationException("Unable to prepare email", e.getCause());
-        } catch (MailException m) {
-            throw new MailSendException("Unable to send email", m.getCause());
-        }
+    private void sendMailWithContent(MailCategory category, String recipientEmail, String subject, String content) {
+        // The outbox sends it once the current transaction commits, the content is already rendered HTML
+        mailOutbox.enqueue(category, recipientEmail, null, "[Area FiftyLAN] " + subject, content, true);
     }
 
     @Override
     public void sendMail(String recipientEmail, String recipientName, String subject, String messageString) {
+        sendMail(MailCategory.TEMPLATE, recipientEmail, recipientName, subject, messageString);
+    }
+
+    private void sendMail(MailCategory category, String recipientEmail, String recipientName, String subject,
+                          String messageString) {
         String htmlContent = prepareHtmlContent(recipientName, messageString);
-        sendMailWithContent(recipientEmail, subject, htmlContent);
+        sendMailWithContent(category, recipientEmail, subject, htmlContent);
     }
 
     @Override
     public void sendContactMail(String senderEmail, String subject, String messageString) {
-        MimeMessage mimeMessage = this.mailSender.createMimeMessage();
-        MimeMessageHelper message;
-
-        try {
-            message = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-            message.setSubject("[Contact] " + subject);
-            message.setFrom(senderEmail);
-            message.setTo(contact);
-
-            message.setText(messageString);
-
-            this.mailSender.send(mimeMessage);
-        } catch (MessagingException m) {
-            throw new MailSendException("Unable to send email", m.getCause());
-        }
+        mailOutbox.enqueue(MailCategory.CONTACT, contact, senderEmail, "[Contact] " + subject, messageString, false);
     }
 
     private String prepareHtmlContent(String name, String message) {
-        // Prepare the evaluation context
-        final Context ctx = new Context(new Locale("en"));
-        ctx.setVariable("name", name);
-        ctx.setVariable("message", message);
-        ctx.setVariable("year", year);
-        return this.templateEngine.process("mailTemplate", ctx);
+        return mailTemplates.renderMail(name, message);
     }
 
     private String formatRecipient(User user) {
@@ -125,20 +84,6 @@ private String formatRecipient(User user) {
         return "";
     }
 
-    @Override
-    public void sendTemplateMailToTeam(Team team, MailDTO mailDTO) {
-        for (User user : team.getMembers()) {
-            sendTemplateMailToUser(user, mailDTO);
-        }
-    }
-
-    @Override
-    public void sendTemplateMailToAll(Collection<User> users, MailDTO mailDTO) {
-        for (User user : users) {
-            sendTemplateMailToUser(user, mailDTO);
-        }
-    }
-
     @Override
     public void sendTemplateMailToUser(User user, MailDTO mailDTO) {
         sendMail(user.getEmail(), formatRecipient(user), mailDTO.getSubject(), mailDTO.getMessage());
@@ -150,7 +95,8 @@ public void sendVerificationmail(User user, String url) {
                 "Please click on the following link to complete your registration: <a href=\"" + url + "\">" + url +
                         "</a><br /><br />If the link does not work, please copy the link and" +
                         " paste it into your browser.";
-        sendMail(user.getEmail(), formatRecipient(user), "Confirm your registration", message);
+        sendMail(MailCategory.VERIFICATION, user.getEmail(), formatRecipient(user), "Confirm your registration",
+                message);
     }
 
     @Override
@@ -163,14 +109,16 @@ public void sendOrderConfirmation(Order order) {
         ctx.setVariable("year", year);
         String content = this.templateEngine.process("orderConfirmation", ctx);
 
-        sendMailWithContent(order.getUser().getEmail(), "Order Confirmation", content);
+        sendMailWithContent(MailCategory.ORDER_CONFIRMATION, order.getUser().getEmail(), "Order Confirmation",
+                content);
     }
 
     @Override
     public void sendPasswordResetMail(User user, String url) {
         String message = "Please click on the following link to reset your password: <a href=\"" + url + "\">" + url +
                 "</a><br /><br />If the link does not work, please copy the link and" + " paste it into your browser.";
-        sendMail(user.getEmail(), formatRecipient(user), "Password reset requested", message);
+        sendMail(MailCategory.PASSWORD_RESET, user.getEmail(), formatRecipient(user), "Password reset requested",
+                message);
     }
 
     @Override
@@ -181,7 +129,8 @@ public void sendTeamInviteMail(User user, String teamName, User teamCaptain) {
                         " " + teamCaptain.getProfile().getLastName() +
                         "! Please log in to My Area to accept the invitation.";
 
-        sendMail(user.getEmail(), formatRecipient(user), "You've been invited to \"Team " + teamName + "\"", message);
+        sendMail(MailCategory.TEAM_INVITE, user.getEmail(), formatRecipient(user),
+                "You've been invited to \"Team " + teamName + "\"", message);
     }
 
     @Override
@@ -190,7 +139,7 @@ public void sendSeatOverrideMail(User user) {
         String message = "Unfortunately we had to reallocate your reserved seat.\n" +
                          "Please contact us if you have any questions.\n" +
                          "You can reserve a new seat through <a href=\"https://areafiftylan.nl/my-area\">My Area</a>.";
-        sendMail(user.getEmail(), formatRecipient(user), subject, message);
+        sendMail(MailCategory.SEAT_OVERRIDE, user.getEmail(), formatRecipient(user), subject, message);
     }
 
     @Override
@@ -198,6 +147,7 @@ public void sendTicketTransferMail(User sender, User receiver, String url) {
         String message = sender.getProfile().getFirstName() +
                 " has sent you a ticket for AreaFiftyLAN! To accept this ticket please click on the following link: " +
                 "<a href=\"" + url + "\">" + url + "</a>";
-        sendMail(receiver.getEmail(), formatRecipient(receiver), "A ticket for AreaFiftyLAN has been sent to you!", message);
+        sendMail(MailCategory.TICKET_TRANSFER, receiver.getEmail(), formatRecipient(receiver),
+                "A ticket for AreaFiftyLAN has been sent to you!", message);
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders mail templates without running Thymeleaf for every mail. Each template is rendered once, with a marker in
+ * place of every variable that changes per mail, and split into its static parts. Rendering a mail then only joins
+ * those parts with the values of that mail.
+ */
+@Component
+public class MailTemplates {
+
+    private static final String MAIL_TEMPLATE = "mailTemplate";
+    private static final Pattern SLOT_MARKER = Pattern.compile("__A5L_SLOT_(\\d+)__");
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final Map<String, CompiledTemplate> compiledTemplates = new ConcurrentHashMap<>();
+
+    @Value("${a5l.mail.year}")
+    String year;
+
+    public MailTemplates(SpringTemplateEngine templateEngine) {
+        this.templateEngine = templateEngine;
+    }
+
+    /**
+     * Render the general mail template.
+     *
+     * @param name    The name of the recipient, starting with a space, or empty. This is escaped.
+     * @param message The message as HTML. This is not escaped.
+     * @return The mail as HTML
+     */
+    public String renderMail(String name, String message) {
+        CompiledTemplate template = compiledTemplates.computeIfAbsent(MAIL_TEMPLATE,
+                t -> compile(t, "name", "message"));
+        return template.fill(name == null ? "" : HtmlUtils.htmlEscape(name, "UTF-8"), message == null ? "" : message);
+    }
+
+    private CompiledTemplate compile(String template, String... slots) {
+        final Context ctx = new Context(new Locale("en"));
+        ctx.setVariable("year", year);
+        for (int i = 0; i < slots.length; i++) {
+            ctx.setVariable(slots[i], "__A5L_SLOT_" + i + "__");
+        }
+        String rendered = templateEngine.process(template, ctx);
+
+        List<String> parts = new ArrayList<>();
+        List<Integer> slotIndices = new ArrayList<>();
+        Matcher matcher = SLOT_MARKER.matcher(rendered);
+        int start = 0;
+        while (matcher.find()) {
+            parts.add(rendered.substring(start, matcher.start()));
+            slotIndices.add(Integer.parseInt(matcher.group(1)));
+            start = matcher.end();
+        }
+        parts.add(rendered.substring(start));
+        return new CompiledTemplate(parts, slotIndices);
+    }
+
+    private static final class CompiledTemplate {
+        private final String[] parts;
+        private final int[] slots;
+        private final int staticLength;
+
+        private CompiledTemplate(List<String> parts, List<Integer> slots) {
+            this.parts = parts.toArray(new String[0]);
+            this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+            this.staticLength = parts.stream().mapToInt(String::length).sum();
+        }
+
+        private String fill(String... values) {
+            StringBuilder builder = new StringBuilder(staticLength + 256);
+            for (int i = 0; i < slots.length; i++) {
+                builder.append(parts[i]).append(values[slots[i]]);
+            }
+            return builder.append(parts[parts.length - 1]).toString();
+        }
+    }
+}
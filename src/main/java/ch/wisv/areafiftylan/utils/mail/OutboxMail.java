@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A rendered mail waiting in the outbox. It is stored in the same transaction as the change it is about, and sent
+ * afterwards by the {@link MailOutbox} workers. Mails that keep failing end up with status FAILED.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "mail_outbox", indexes = @Index(name = "mail_outbox_due_idx", columnList = "status, next_attempt_at"))
+public class OutboxMail {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MailCategory category;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    // Empty for mails from the default sender
+    private String sender;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, length = 65536)
+    private String content;
+
+    private boolean html;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MailDeliveryStatus status = MailDeliveryStatus.PENDING;
+
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    OutboxMail(MailCategory category, String recipient, String sender, String subject, String content, boolean html) {
+        this.category = category;
+        this.recipient = recipient;
+        this.sender = sender;
+        this.subject = subject;
+        this.content = content;
+        this.html = html;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
@@ -0,0 +1,4 @@
+alter table if exists seat add column version int8 default 0 not null;
+-- A ticket can only be on one seat, keep the oldest seat if an earlier race left it on more
+update seat set ticket_id = null where id in (select s.id from seat s where exists (select 1 from seat o where o.ticket_id = s.ticket_id and o.id < s.id));
+alter table if exists seat add constraint seatTicketConstraint unique (ticket_id);
@@ -0,0 +1,2 @@
+-- The cleanup of unverified users selects expired tokens by date
+create index if not exists token_expiry_date_idx on token (expiry_date);
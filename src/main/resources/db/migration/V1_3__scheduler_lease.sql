@@ -0,0 +1,2 @@
+-- Leases on scheduled jobs, so only one node runs each job per interval
+create table scheduler_lease (name varchar(255) not null, owner varchar(255), locked_until timestamp, last_run_at timestamp, last_duration_ms int8, primary key (name));
@@ -0,0 +1,3 @@
+-- Outgoing mail is stored with the change it is about and sent in the background
+create table mail_outbox (id int8 not null, attempts int4 not null, category varchar(255) not null, content text not null, created_at timestamp not null, html boolean not null, last_error varchar(1000), next_attempt_at timestamp not null, recipient varchar(255) not null, sender varchar(255), sent_at timestamp, status varchar(255) not null, subject varchar(255) not null, primary key (id));
+create index mail_outbox_due_idx on mail_outbox (status, next_attempt_at);
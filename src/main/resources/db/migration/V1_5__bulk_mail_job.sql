@@ -0,0 +1,2 @@
+-- Progress of mails sent to all users or a whole team
+create table bulk_mail_job (id int8 not null, created_at timestamp not null, failed int4 not null, finished_at timestamp, heartbeat_at timestamp, last_error varchar(1000), owner varchar(255), recipients int4 not null, sent int4 not null, started_at timestamp, status varchar(255) not null, subject varchar(255) not null, target varchar(255) not null, primary key (id));
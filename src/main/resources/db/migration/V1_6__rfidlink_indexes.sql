@@ -0,0 +1,3 @@
+-- Links are looked up by rfid on every scan and by ticket when tickets are transferred
+create index if not exists rfidlink_rfid_idx on rfidlink (rfid);
+create index if not exists rfidlink_ticket_id_idx on rfidlink (ticket_id);
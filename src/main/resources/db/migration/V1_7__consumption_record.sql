@@ -0,0 +1,11 @@
+-- Claimed consumptions move from the per-ticket consumption map to a ledger with one row per claim
+create table consumption_record (consumption_id int8 not null, ticket_id int8 not null, consumed_at timestamp not null, idempotency_key varchar(255), primary key (ticket_id, consumption_id));
+create index consumption_record_consumption_idx on consumption_record (consumption_id);
+alter table if exists consumption_record add constraint consumption_record_ticket_fk foreign key (ticket_id) references ticket;
+alter table if exists consumption_record add constraint consumption_record_consumption_fk foreign key (consumption_id) references consumption;
+insert into consumption_record (consumption_id, ticket_id, consumed_at)
+    select distinct made.consumptions_made_id, map.ticket_id, now()
+    from consumption_map map join consumption_map_consumptions_made made on made.consumption_map_id = map.id
+    where map.ticket_id is not null;
+drop table consumption_map_consumptions_made;
+drop table consumption_map;
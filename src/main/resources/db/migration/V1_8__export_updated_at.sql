@@ -0,0 +1,11 @@
+-- Last change of the rows handed out by the export, so an export since a cursor only reads what changed
+alter table if exists users add column updated_at timestamp;
+alter table if exists profile add column updated_at timestamp;
+alter table if exists ticket add column updated_at timestamp;
+alter table if exists seat add column updated_at timestamp;
+alter table if exists team add column updated_at timestamp;
+create index users_updated_at_idx on users (updated_at);
+create index profile_updated_at_idx on profile (updated_at);
+create index ticket_updated_at_idx on ticket (updated_at);
+create index seat_updated_at_idx on seat (updated_at);
+create index team_updated_at_idx on team (updated_at);
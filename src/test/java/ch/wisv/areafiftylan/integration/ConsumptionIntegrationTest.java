@@ -19,7 +19,6 @@
 package ch.wisv.areafiftylan.integration;
 
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
-import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMapsRepository;
 import ch.wisv.areafiftylan.extras.consumption.model.PossibleConsumptionsRepository;
 import ch.wisv.areafiftylan.extras.consumption.service.ConsumptionService;
 import ch.wisv.areafiftylan.products.model.Ticket;
@@ -30,10 +29,16 @@
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConsumptionIntegrationTest extends XAuthIntegrationTest {
 
@@ -43,9 +48,6 @@ public class ConsumptionIntegrationTest extends XAuthIntegrationTest {
     @Autowired
     private PossibleConsumptionsRepository consumptionsRepository;
 
-    @Autowired
-    private ConsumptionMapsRepository consumptionMapsRepository;
-
     @Autowired
     private ConsumptionService consumptionService;
 
@@ -189,6 +191,31 @@ public void removeAvailableConsumptionTestAsAdmin() {
         //@formatter:on
     }
 
+    @Test
+    public void removeAvailableConsumptionTestAsAdminConsumed() {
+        User user = createAdmin();
+        Ticket ticket = createTicketForUser(user);
+        Ticket invalidatedTicket = createTicketForUser(createUser());
+        Consumption consumption = getOrPersistConsumption("removeAvailableConsumptionTestAsAdminConsumed");
+        consumptionService.consume(ticket.getId(), consumption.getId());
+        consumptionService.consume(invalidatedTicket.getId(), consumption.getId());
+        invalidatedTicket.setValid(false);
+        ticketRepository.saveAndFlush(invalidatedTicket);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            contentType(ContentType.JSON).
+        when().
+            delete(CONSUMPTION_ENDPOINT + "/" + consumption.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        assertFalse(consumptionsRepository.findById(consumption.getId()).isPresent());
+        assertTrue(consumptionService.getByTicketIdIfValid(ticket.getId()).getConsumptionsMade().isEmpty());
+    }
+
     @Test
     public void removeAvailableConsumptionTestAsAdminNoneThere() {
         User user = createAdmin();
@@ -329,6 +356,48 @@ public void consumeTestAsAdminAlreadyConsumed() {
         //@formatter:on
     }
 
+    @Test
+    public void consumeTestAsAdminRetryWithIdempotencyKey() {
+        User user = createAdmin();
+        Ticket ticket = createTicketForUser(user);
+        Consumption consumption = getOrPersistConsumption(CONSUMPTION);
+        consumptionService.consume(ticket.getId(), consumption.getId(), "scanner-1-42");
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "scanner-1-42").
+            body(consumption.getId()).
+            contentType(ContentType.JSON).
+        when().
+            post(CONSUMPTION_ENDPOINT + "/" + ticket.getId() + "/consume").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("message", equalTo("Successfully consumed consumption"));
+        //@formatter:on
+    }
+
+    @Test
+    public void consumeTestAsAdminOtherIdempotencyKey() {
+        User user = createAdmin();
+        Ticket ticket = createTicketForUser(user);
+        Consumption consumption = getOrPersistConsumption(CONSUMPTION);
+        consumptionService.consume(ticket.getId(), consumption.getId(), "scanner-1-42");
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "scanner-2-7").
+            body(consumption.getId()).
+            contentType(ContentType.JSON).
+        when().
+            post(CONSUMPTION_ENDPOINT + "/" + ticket.getId() + "/consume").
+        then().
+            statusCode(HttpStatus.SC_CONFLICT).
+            body("message", equalTo("Consumption " + consumption.getName() + " has already been consumed."));
+        //@formatter:on
+    }
+
     @Test
     public void consumeTestAsAdminDoesntExist() {
         User user = createAdmin();
@@ -464,4 +533,88 @@ public void resetTestAsAdminInvalidTicket() {
             body("message", equalTo("Ticket is invalid; It can not be used for consumptions."));
         //@formatter:on
     }
+
+    private Map<String, Object> scanEvent(String eventId, Long ticketId, Long consumptionId) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventId", eventId);
+        event.put("ticketId", ticketId);
+        event.put("consumptionId", consumptionId);
+        return event;
+    }
+
+    @Test
+    public void processScansTestAsAdmin() {
+        User user = createAdmin();
+        Ticket ticket = createTicketForUser(user);
+        Ticket invalidTicket = createTicketForUser(createUser());
+        invalidTicket.setValid(false);
+        ticketRepository.saveAndFlush(invalidTicket);
+        Consumption consumption = getOrPersistConsumption(CONSUMPTION);
+
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("events", Arrays.asList(
+                scanEvent("processScans-1", ticket.getId(), consumption.getId()),
+                scanEvent("processScans-2", ticket.getId(), consumption.getId()),
+                scanEvent("processScans-3", invalidTicket.getId(), consumption.getId()),
+                scanEvent("processScans-4", ticket.getId(), 9999L)));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            body(batch).
+            contentType(ContentType.JSON).
+        when().
+            post(CONSUMPTION_ENDPOINT + "/scans").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("eventId", contains("processScans-1", "processScans-2", "processScans-3", "processScans-4")).
+            body("status", contains("OK", "ALREADY_CONSUMED", "INVALID_TICKET", "UNKNOWN_CONSUMPTION"));
+        //@formatter:on
+
+        assertTrue(consumptionService.isConsumed(ticket.getId(), consumption.getId()));
+    }
+
+    @Test
+    public void processScansTestAsAdminReplay() {
+        User user = createAdmin();
+        Ticket ticket = createTicketForUser(user);
+        Consumption consumption = getOrPersistConsumption(CONSUMPTION);
+        consumptionService.consume(ticket.getId(), consumption.getId(), "processScansReplay-1");
+
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("events", Arrays.asList(
+                scanEvent("processScansReplay-1", ticket.getId(), consumption.getId()),
+                scanEvent("processScansReplay-2", ticket.getId(), consumption.getId())));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            body(batch).
+            contentType(ContentType.JSON).
+        when().
+            post(CONSUMPTION_ENDPOINT + "/scans").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("status", contains("OK", "ALREADY_CONSUMED"));
+        //@formatter:on
+    }
+
+    @Test
+    public void processScansTestAsUser() {
+        User user = createUser();
+
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("events", Collections.emptyList());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            body(batch).
+            contentType(ContentType.JSON).
+        when().
+            post(CONSUMPTION_ENDPOINT + "/scans").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
+import ch.wisv.areafiftylan.extras.consumption.service.ConsumptionService;
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterService;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDService;
+import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.users.model.User;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+public class LiveCounterIntegrationTest extends XAuthIntegrationTest {
+
+    @Autowired
+    private ConsumptionService consumptionService;
+
+    @Autowired
+    private RFIDService rfidService;
+
+    @Autowired
+    private LiveCounterService liveCounterService;
+
+    private final String COUNTERS_ENDPOINT = "/counters";
+
+    @Test
+    public void getCountersAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(COUNTERS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void getCountersAfterConsume() {
+        User admin = createAdmin();
+        Ticket ticket = createTicketForUser(admin);
+        Consumption consumption = consumptionService.addPossibleConsumption("getCountersAfterConsume");
+        consumptionService.consume(ticket.getId(), consumption.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get(COUNTERS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("consumptions.find { it.consumptionId == " + consumption.getId() + " }.name",
+                    equalTo("getCountersAfterConsume")).
+            body("consumptions.find { it.consumptionId == " + consumption.getId() + " }.claimed", equalTo(1));
+        //@formatter:on
+    }
+
+    @Test
+    public void getCountersAfterReset() {
+        User admin = createAdmin();
+        Ticket ticket = createTicketForUser(admin);
+        Consumption consumption = consumptionService.addPossibleConsumption("getCountersAfterReset");
+        consumptionService.consume(ticket.getId(), consumption.getId());
+        consumptionService.reset(ticket.getId(), consumption.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get(COUNTERS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("consumptions.find { it.consumptionId == " + consumption.getId() + " }.claimed", equalTo(0));
+        //@formatter:on
+    }
+
+    @Test
+    public void getCountersAfterLink() {
+        User admin = createAdmin();
+        Ticket ticket = createTicketForUser(admin);
+        long linkedTickets = liveCounterService.getCounters().getLinkedTickets();
+        rfidService.addRFIDLink(String.format("8%09d", ticket.getId()), ticket.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get(COUNTERS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("linkedTickets", equalTo((int) linkedTickets + 1));
+        //@formatter:on
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.users.model.User;
+import io.restassured.http.ContentType;
+import io.restassured.http.Header;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+public class MailRestIntegrationTest extends XAuthIntegrationTest {
+
+    private Map<String, String> getMailDTO() {
+        Map<String, String> mailDTO = new HashMap<>();
+        mailDTO.put("subject", "Subject");
+        mailDTO.put("message", "Message");
+        return mailDTO;
+    }
+
+    @Test
+    public void mailAllUsersAsAdmin() {
+        User admin = createAdmin();
+        Header header = getXAuthTokenHeaderForUser(admin);
+
+        //@formatter:off
+        Integer jobId =
+            given().
+                header(header).
+            when().
+                body(getMailDTO()).contentType(ContentType.JSON).
+                post("/mail/users/all/YESREALLY").
+            then().
+                statusCode(HttpStatus.SC_ACCEPTED).
+                header("Location", containsString("/mail/jobs/")).
+                body("object.target", is("All users")).
+            extract().path("object.id");
+
+        given().
+            header(header).
+        when().
+            get("/mail/jobs/" + jobId).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object.subject", is("Subject")).
+            body("object.status", isOneOf("QUEUED", "RUNNING", "FINISHED"));
+        //@formatter:on
+    }
+
+    @Test
+    public void mailAllUsersAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            body(getMailDTO()).contentType(ContentType.JSON).
+            post("/mail/users/all/YESREALLY").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void getUnknownBulkMailJob() {
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get("/mail/jobs/-1").
+        then().
+            statusCode(HttpStatus.SC_NOT_FOUND);
+        //@formatter:on
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.service.SeatHoldRegistry;
+import ch.wisv.areafiftylan.seats.service.SeatRepository;
+import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.users.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Forces version conflicts in seat reservations, by changing the Seat from another thread while the reservation
+ * transaction is between reading and writing it.
+ */
+public class SeatReservationRetryIntegrationTest extends XAuthIntegrationTest {
+
+    private static final String GROUP = "A";
+    private static final int NUMBER = 2;
+
+    @SpyBean
+    private SeatHoldRegistry seatHoldRegistry;
+    @Autowired
+    private SeatService seatService;
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @AfterEach
+    public void cleanupRetryTest() {
+        seatService.clearSeat(GROUP, NUMBER);
+        seatService.setSeatLocked(GROUP, NUMBER, false);
+    }
+
+    private Seat getSeat() {
+        return seatRepository.findBySeatGroupAndSeatNumber(GROUP, NUMBER).orElseThrow(IllegalStateException::new);
+    }
+
+    /**
+     * The hold check inside the reservation transaction runs after the Seat was read, so changing the Seat there
+     * makes the reservation write a stale version.
+     */
+    private void interfere(boolean always, Runnable concurrentChange) {
+        AtomicBoolean interfered = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (TransactionSynchronizationManager.isActualTransactionActive() &&
+                    (always || interfered.compareAndSet(false, true))) {
+                Thread thread = new Thread(concurrentChange);
+                thread.start();
+                thread.join();
+            }
+            return invocation.callRealMethod();
+        }).when(seatHoldRegistry).isHeldByOther(anyString(), anyInt(), any());
+    }
+
+    private void toggleLock() {
+        seatService.setSeatLocked(GROUP, NUMBER, true);
+        seatService.setSeatLocked(GROUP, NUMBER, false);
+    }
+
+    @Test
+    public void reserveSeatRetriesAfterVersionConflict() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        long versionBefore = getSeat().getVersion();
+        interfere(false, this::toggleLock);
+
+        assertTrue(seatService.reserveSeat(GROUP, NUMBER, ticket.getId(), false));
+
+        Seat seat = getSeat();
+        assertEquals(ticket.getId(), seat.getTicket().getId());
+        // Two lock changes from the other thread, one reservation from the retry
+        assertEquals(versionBefore + 3, seat.getVersion());
+        // One check before the transaction, one in each attempt
+        verify(seatHoldRegistry, times(3)).isHeldByOther(GROUP, NUMBER, ticket.getId());
+    }
+
+    @Test
+    public void reserveSeatRetrySeesConcurrentReservation() {
+        Ticket ticket = createTicketForUser(createUser());
+        Ticket otherTicket = createTicketForUser(createUser());
+        interfere(false, () -> seatService.reserveSeat(GROUP, NUMBER, otherTicket.getId(), true));
+
+        assertFalse(seatService.reserveSeat(GROUP, NUMBER, ticket.getId(), false));
+
+        assertEquals(otherTicket.getId(), getSeat().getTicket().getId());
+    }
+
+    @Test
+    public void reserveSeatGivesUpAfterMaxAttempts() {
+        Ticket ticket = createTicketForUser(createUser());
+        interfere(true, this::toggleLock);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> seatService.reserveSeat(GROUP, NUMBER, ticket.getId(), false));
+
+        assertFalse(getSeat().isTaken());
+        verify(seatHoldRegistry, times(4)).isHeldByOther(GROUP, NUMBER, ticket.getId());
+    }
+}
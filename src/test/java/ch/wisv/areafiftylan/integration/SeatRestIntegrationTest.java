@@ -22,19 +22,35 @@
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.BulkSeatReservationDTO;
 import ch.wisv.areafiftylan.seats.model.SeatGroupDTO;
+import ch.wisv.areafiftylan.seats.model.SeatReservationDTO;
 import ch.wisv.areafiftylan.seats.service.SeatRepository;
 import ch.wisv.areafiftylan.seats.service.SeatService;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.User;
 import io.restassured.http.ContentType;
+import io.restassured.http.Header;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
@@ -54,15 +70,29 @@ public class SeatRestIntegrationTest extends XAuthIntegrationTest {
     @Autowired
     private SeatService seatService;
 
+    private final List<Long> heldTicketIds = new ArrayList<>();
+
+    private SeatReservationDTO seatReservation(String group, int number, Ticket ticket) {
+        SeatReservationDTO reservation = new SeatReservationDTO();
+        reservation.setSeatGroup(group);
+        reservation.setSeatNumber(number);
+        reservation.setTicketId(ticket.getId());
+        return reservation;
+    }
+
     private void setTicketOnA1(Ticket ticket) {
-        Seat seat = seatRepository.findAll().get(0);
-        seat.setTicket(ticket);
+        // Go through the service, so the seatmap snapshot is updated as well
+        seatService.reserveSeat("A", 1, ticket.getId(), true);
+    }
 
-        seatRepository.save(seat);
+    private Map<Long, Seat> seatsById(List<Seat> seats) {
+        return seats.stream().collect(Collectors.toMap(Seat::getId, Function.identity()));
     }
 
     @AfterEach
     public void cleanupSeatTest() {
+        heldTicketIds.forEach(seatService::releaseSeatHold);
+        heldTicketIds.clear();
         seatService.clearSeat("A", 1);
         seatService.clearSeat("A", 2);
         seatService.clearSeat("A", 3);
@@ -99,6 +129,126 @@ public void getAllSeatAsUser() {
         //@formatter:on
     }
 
+    @Test
+    public void getAllSeatsNotModified() {
+        User user = createUser();
+        Header header = getXAuthTokenHeaderForUser(user);
+
+        //@formatter:off
+        String etag =
+            given().
+                header(header).
+            when().
+                get(SEAT_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                header("ETag", notNullValue()).
+            extract().header("ETag");
+
+        given().
+            header(header).
+            header("If-None-Match", etag).
+        when().
+            get(SEAT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_NOT_MODIFIED);
+        //@formatter:on
+
+        seatService.setSeatLocked("A", 1, true);
+
+        //@formatter:off
+        given().
+            header(header).
+            header("If-None-Match", etag).
+        when().
+            get(SEAT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            header("ETag", not(etag)).
+            body("seatmap.A.find { it.seatNumber == 1 }.locked", is(true));
+        //@formatter:on
+    }
+
+    @Test
+    public void streamSeatmapSendsVersionFirst() throws IOException {
+        User user = createUser();
+        Header header = getXAuthTokenHeaderForUser(user);
+
+        //@formatter:off
+        String etag =
+            given().
+                header(header).
+            when().
+                get(SEAT_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+            extract().header("ETag");
+        //@formatter:on
+
+        // The stream stays open, so only read up to the end of the first event
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + port + SEAT_ENDPOINT + "/stream").openConnection();
+        connection.setRequestProperty(header.getName(), header.getValue());
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setReadTimeout(5000);
+        try (BufferedReader reader =
+                     new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals(HttpStatus.SC_OK, connection.getResponseCode());
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                lines.add(line);
+            }
+            assertTrue(lines.contains("event:version"));
+            assertTrue(lines.stream().anyMatch(l -> l.startsWith("data:") && l.contains(etag.replace("\"", ""))));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void getAllSeatsModifiedAfterMaxAge() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        setTicketOnA1(ticket);
+        Header header = getXAuthTokenHeaderForUser(user);
+
+        //@formatter:off
+        String etag =
+            given().
+                header(header).
+            when().
+                get(SEAT_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+            extract().header("ETag");
+        //@formatter:on
+
+        // A display name change doesn't bump the seatmap version, only the max age rebuild picks it up
+        user.getProfile().setDisplayName("Renamed" + user.getId());
+        userRepository.save(user);
+
+        Object target = AopTestUtils.getTargetObject(seatService);
+        Object maxAge = ReflectionTestUtils.getField(target, "SNAPSHOT_MAX_AGE_SECONDS");
+        ReflectionTestUtils.setField(target, "SNAPSHOT_MAX_AGE_SECONDS", 0L);
+        try {
+            //@formatter:off
+            given().
+                header(header).
+                header("If-None-Match", etag).
+            when().
+                get(SEAT_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                header("ETag", not(etag)).
+                body("seatmap.A.find { it.seatNumber == 1 }.ticket.owner.profile.displayName",
+                        is("Renamed" + user.getId()));
+            //@formatter:on
+        } finally {
+            ReflectionTestUtils.setField(target, "SNAPSHOT_MAX_AGE_SECONDS", maxAge);
+        }
+    }
+
     @Test
     public void getAllSeatsAdminViewAsAnon() {
         //@formatter:off
@@ -320,6 +470,75 @@ public void getSeatsForTeam() {
             body("ticket.owner.profile", not(hasKey("firstName")));
         //@formatter:on
     }
+
+    @Test
+    public void getSeatOccupancy() {
+        User user = createUser();
+        setTicketOnA1(createTicketForUser(user));
+        seatService.setSeatLocked("A", 3, true);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            accept(ContentType.JSON).
+        when().
+            get(SEAT_ENDPOINT + "/occupancy").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("seatGroups.A.seats", is(5)).
+            body("seatGroups.A.taken", is("AQ==")).
+            body("seatGroups.A.locked", is("BA=="));
+        //@formatter:on
+    }
+
+    @Test
+    public void getSeatOccupancyBinary() {
+        User user = createUser();
+        setTicketOnA1(createTicketForUser(user));
+
+        //@formatter:off
+        byte[] occupancy =
+            given().
+                header(getXAuthTokenHeaderForUser(user)).
+                accept("application/octet-stream").
+            when().
+                get(SEAT_ENDPOINT + "/occupancy").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                contentType("application/octet-stream").
+            extract().asByteArray();
+        //@formatter:on
+
+        // version (8), group count (2), name length (2), "A" (1), seats (2), taken (1), locked (1)
+        assertEquals(17, occupancy.length);
+        assertEquals(1, occupancy[15]);
+    }
+
+    @Test
+    public void getSeatsByTeamName() {
+        User captain = createUser();
+        Ticket captainTicket = createTicketForUser(captain);
+        User member = createUser();
+        Ticket memberTicket = createTicketForUser(member);
+        User other = createUser();
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+        seatService.reserveSeat("A", 2, captainTicket.getId(), true);
+        seatService.reserveSeat("A", 3, memberTicket.getId(), true);
+        seatService.reserveSeat("A", 4, createTicketForUser(other).getId(), true);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(other)).
+        when().
+            get("/teams/" + team.getTeamName().toUpperCase() + "/seats").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("$", hasSize(2)).
+            body("seatNumber", containsInAnyOrder(2, 3)).
+            body("ticket.owner", everyItem(not(hasKey("email"))));
+        //@formatter:on
+    }
     //endregion Get Seat
     //region Add/Remove SeatGroups
     @Test
@@ -386,6 +605,27 @@ public void addSeatGroupAsAdmin() {
         assertTrue(seatGroup.size() == 5);
     }
 
+    @Test
+    public void addSeatGroupReservedNameAsAdmin() {
+        User admin = createAdmin();
+        SeatGroupDTO seatGroupDTO = new SeatGroupDTO();
+        seatGroupDTO.setSeatGroupName("holds");
+        seatGroupDTO.setNumberOfSeats(5);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            body(seatGroupDTO).
+            contentType(ContentType.JSON).
+            post(SEAT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_BAD_REQUEST);
+        //@formatter:on
+
+        assertTrue(seatRepository.findBySeatGroup("holds").isEmpty());
+    }
+
     @Test
     public void addSeatsToExistingGroupAsAdmin() {
         User admin = createAdmin();
@@ -501,6 +741,38 @@ public void removeSeatGroupAsAdminFully() {
         List<Seat> seatGroup = seatRepository.findBySeatGroup(TEMP_SEATGROUP);
         assertTrue(seatGroup.isEmpty());
     }
+    @Test
+    public void removeSeatGroupKeepsLowerSeatsAndTickets() {
+        User admin = createAdmin();
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        SeatGroupDTO seatGroupDTO = new SeatGroupDTO();
+        seatGroupDTO.setSeatGroupName(TEMP_SEATGROUP);
+        seatGroupDTO.setNumberOfSeats(5);
+        seatService.addSeats(seatGroupDTO);
+        seatService.setSeatGroupLocked(TEMP_SEATGROUP, false);
+        seatService.reserveSeat(TEMP_SEATGROUP, 5, ticket.getId(), true);
+        Map<Long, Seat> before = seatsById(seatRepository.findBySeatGroup(TEMP_SEATGROUP));
+        seatGroupDTO.setNumberOfSeats(2);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            body(seatGroupDTO).
+            contentType(ContentType.JSON).
+            delete(SEAT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        List<Seat> remaining = seatRepository.findBySeatGroup(TEMP_SEATGROUP);
+        assertEquals(Arrays.asList(1, 2, 3),
+                remaining.stream().map(Seat::getSeatNumber).sorted().collect(Collectors.toList()));
+        remaining.forEach(seat -> assertEquals(before.get(seat.getId()).getVersion(), seat.getVersion()));
+        assertTrue(ticketRepository.findById(ticket.getId()).isPresent());
+        assertFalse(seatRepository.findByTicketId(ticket.getId()).isPresent());
+    }
     //endregion Add/Remove SeatGroups
     //region Reserve Seat
     @Test
@@ -799,6 +1071,229 @@ public void reserveSeatAsAdminWithoutTicket() {
         Seat seat = seatService.getSeatBySeatGroupAndSeatNumber("A", 1);
         assertNull(seat.getTicket());
     }
+
+    @Test
+    public void reserveSeatsForTeamAsCaptain() {
+        User captain = createUser();
+        Ticket captainTicket = createTicketForUser(captain);
+        User member = createUser();
+        Ticket memberTicket = createTicketForUser(member);
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+
+        BulkSeatReservationDTO bulkSeatReservationDTO = new BulkSeatReservationDTO();
+        bulkSeatReservationDTO.setReservations(
+                Arrays.asList(seatReservation("A", 3, captainTicket), seatReservation("A", 4, memberTicket)));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+            body(bulkSeatReservationDTO).
+            contentType(ContentType.JSON).
+        when().
+            post(SEAT_ENDPOINT + "/reservations").
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        assertEquals(captainTicket.getId(), seatService.getSeatBySeatGroupAndSeatNumber("A", 3).getTicket().getId());
+        assertEquals(memberTicket.getId(), seatService.getSeatBySeatGroupAndSeatNumber("A", 4).getTicket().getId());
+    }
+
+    @Test
+    public void reserveSeatsForOtherUserAsUser() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        User other = createUser();
+        Ticket otherTicket = createTicketForUser(other);
+
+        BulkSeatReservationDTO bulkSeatReservationDTO = new BulkSeatReservationDTO();
+        bulkSeatReservationDTO.setReservations(
+                Arrays.asList(seatReservation("A", 3, ticket), seatReservation("A", 4, otherTicket)));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            body(bulkSeatReservationDTO).
+            contentType(ContentType.JSON).
+        when().
+            post(SEAT_ENDPOINT + "/reservations").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+
+        assertFalse(seatService.getSeatBySeatGroupAndSeatNumber("A", 3).isTaken());
+    }
+
+    @Test
+    public void reserveSeatsWithTakenSeat() {
+        User user = createUser();
+        setTicketOnA1(createTicketForUser(user));
+
+        User captain = createUser();
+        Ticket captainTicket = createTicketForUser(captain);
+        User member = createUser();
+        Ticket memberTicket = createTicketForUser(member);
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+
+        BulkSeatReservationDTO bulkSeatReservationDTO = new BulkSeatReservationDTO();
+        bulkSeatReservationDTO.setReservations(
+                Arrays.asList(seatReservation("A", 1, captainTicket), seatReservation("A", 2, memberTicket)));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+            body(bulkSeatReservationDTO).
+            contentType(ContentType.JSON).
+        when().
+            post(SEAT_ENDPOINT + "/reservations").
+        then().
+            statusCode(HttpStatus.SC_CONFLICT).
+            body("object", hasSize(1)).
+            body("object[0].seatNumber", is(1)).
+            body("object[0].reason", is("Seat is already taken"));
+        //@formatter:on
+
+        // Nothing should have been reserved
+        assertFalse(seatService.getSeatBySeatGroupAndSeatNumber("A", 2).isTaken());
+    }
+
+    @Test
+    public void autoSeatTeamAsCaptain() {
+        User captain = createUser();
+        Ticket captainTicket = createTicketForUser(captain);
+        User member = createUser();
+        Ticket memberTicket = createTicketForUser(member);
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            post(SEAT_ENDPOINT + "/teams/" + team.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("$", hasSize(2)).
+            body("seatGroup", everyItem(is("A"))).
+            body("ticket.owner", everyItem(not(hasKey("email"))));
+        //@formatter:on
+
+        Seat captainSeat = seatRepository.findByTicketId(captainTicket.getId()).orElseThrow(AssertionError::new);
+        Seat memberSeat = seatRepository.findByTicketId(memberTicket.getId()).orElseThrow(AssertionError::new);
+        assertEquals(1, Math.abs(captainSeat.getSeatNumber() - memberSeat.getSeatNumber()));
+    }
+
+    @Test
+    public void autoSeatTeamAsMember() {
+        User captain = createUser();
+        createTicketForUser(captain);
+        User member = createUser();
+        createTicketForUser(member);
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(member)).
+        when().
+            post(SEAT_ENDPOINT + "/teams/" + team.getId()).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void findAdjacentSeatsTooLarge() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            queryParam("size", 6).
+        when().
+            get(SEAT_ENDPOINT + "/blocks").
+        then().
+            statusCode(HttpStatus.SC_NOT_FOUND);
+        //@formatter:on
+    }
+
+    @Test
+    public void holdSeatAsUser() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        heldTicketIds.add(ticket.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            post(SEAT_ENDPOINT + "/A/3/" + ticket.getId() + "/hold").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object.ticketId", is(ticket.getId().intValue()));
+
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(SEAT_ENDPOINT + "/A/3").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("pending", is(true)).
+            body("ticket", is(nullValue()));
+        //@formatter:on
+    }
+
+    @Test
+    public void reserveSeatHeldByOther() {
+        User holder = createUser();
+        Ticket holderTicket = createTicketForUser(holder);
+        heldTicketIds.add(holderTicket.getId());
+        seatService.holdSeat("A", 3, holderTicket.getId());
+
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            post(SEAT_ENDPOINT + "/A/3/" + ticket.getId()).
+        then().
+            statusCode(HttpStatus.SC_CONFLICT);
+
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            post(SEAT_ENDPOINT + "/A/3/" + ticket.getId() + "/hold").
+        then().
+            statusCode(HttpStatus.SC_CONFLICT);
+        //@formatter:on
+
+        assertFalse(seatService.getSeatBySeatGroupAndSeatNumber("A", 3).isTaken());
+    }
+
+    @Test
+    public void reserveSeatHeldBySelf() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        heldTicketIds.add(ticket.getId());
+        seatService.holdSeat("A", 3, ticket.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            post(SEAT_ENDPOINT + "/A/3/" + ticket.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        Seat seat = seatService.getSeatBySeatGroupAndSeatNumber("A", 3);
+        assertEquals(ticket.getId(), seat.getTicket().getId());
+        assertFalse(seatService.getSeatMap().getSeatmap().get("A").stream().anyMatch(Seat::isPending));
+    }
     //endregion Reserve seat
     //region Lock Seat
     @Test
@@ -922,5 +1417,64 @@ public void setSeatLockTestTrue() {
 
         assertTrue(seatService.getSeatMap().getSeatmap().get(group).get(2).isLocked());
     }
+
+    @Test
+    public void setAllSeatsLockBumpsVersionOfChangedSeatsOnly() {
+        User admin = createAdmin();
+        seatService.setSeatLocked("A", 1, true);
+        Map<Long, Seat> before = seatsById(seatRepository.findAll());
+
+        //formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            body(true).
+            contentType(ContentType.JSON).
+        when().
+            post(LOCK_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //formatter:on
+
+        List<Seat> after = seatRepository.findAll();
+        assertEquals(before.size(), after.size());
+        for (Seat seat : after) {
+            Seat old = before.get(seat.getId());
+            assertTrue(seat.isLocked());
+            assertEquals(old.isLocked() ? old.getVersion() : old.getVersion() + 1, seat.getVersion());
+        }
+    }
+
+    @Test
+    public void setSeatGroupLockOnlyChangesGroup() {
+        User admin = createAdmin();
+        SeatGroupDTO seatGroupDTO = new SeatGroupDTO();
+        seatGroupDTO.setSeatGroupName(TEMP_SEATGROUP);
+        seatGroupDTO.setNumberOfSeats(3);
+        seatService.addSeats(seatGroupDTO);
+        Map<Long, Seat> before = seatsById(seatRepository.findAll());
+
+        //formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            body(false).
+            contentType(ContentType.JSON).
+        when().
+            post(LOCK_ENDPOINT + TEMP_SEATGROUP).
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //formatter:on
+
+        for (Seat seat : seatRepository.findAll()) {
+            Seat old = before.get(seat.getId());
+            if (seat.getSeatGroup().equals(TEMP_SEATGROUP)) {
+                // New seats start out locked
+                assertFalse(seat.isLocked());
+                assertEquals(old.getVersion() + 1, seat.getVersion());
+            } else {
+                assertEquals(old.isLocked(), seat.isLocked());
+                assertEquals(old.getVersion(), seat.getVersion());
+            }
+        }
+    }
     //endregion Lock Seat
 }
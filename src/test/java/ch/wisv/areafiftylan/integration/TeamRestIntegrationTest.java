@@ -254,6 +254,65 @@ public void testCreateTeamAsUserDuplicateTeamNameDifferentCasing() {
                 statusCode(HttpStatus.SC_CONFLICT);
         //@formatter:on
     }
+
+    @Test
+    public void testCreateTeamNameTakenOutsideIndex() {
+        // Saved through the repository, so the name index doesn't know it yet, like a team created on another node
+        Team existing = createTeamWithCaptain(createUser());
+        User captain = createUser();
+        Map<String, String> teamDTO = getTeamDTO(captain);
+        teamDTO.put("teamName", existing.getTeamName().toLowerCase());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            body(teamDTO).contentType(ContentType.JSON).
+            post(TEAM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_CONFLICT);
+        //@formatter:on
+    }
+
+    @Test
+    public void testRenameTeamToTakenName() {
+        Team existing = createTeamWithCaptain(createUser());
+        User captain = createUser();
+        Team team = createTeamWithCaptain(captain);
+        Map<String, String> teamDTO = getTeamDTO(captain);
+        teamDTO.put("teamName", existing.getTeamName().toUpperCase());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            body(teamDTO).contentType(ContentType.JSON).
+            put(TEAM_ENDPOINT + team.getId()).
+        then().
+            statusCode(HttpStatus.SC_CONFLICT);
+        //@formatter:on
+
+        assertEquals(team.getTeamName(), teamRepository.findById(team.getId()).get().getTeamName());
+    }
+
+    @Test
+    public void testRenameTeamChangeCasing() {
+        User captain = createUser();
+        Team team = createTeamWithCaptain(captain);
+        Map<String, String> teamDTO = getTeamDTO(captain);
+        teamDTO.put("teamName", team.getTeamName().toUpperCase());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            body(teamDTO).contentType(ContentType.JSON).
+            put(TEAM_ENDPOINT + team.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("teamName", equalTo(team.getTeamName().toUpperCase()));
+        //@formatter:on
+    }
     //endregion
 
     //region Test Get Team
@@ -336,6 +395,42 @@ public void getTeamCurrentUser() {
             body("[0].members.profile.displayName", hasItem(captain.getProfile().getDisplayName()));
         //@formatter:on
     }
+
+    @Test
+    public void testGetTeamSummariesAsAdmin() {
+        User admin = createAdmin();
+        User captain = createUser();
+        User member = createUser();
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get(TEAM_ENDPOINT + "?summary").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("find { it.id == " + team.getId() + " }.teamName", equalTo(team.getTeamName())).
+            body("find { it.id == " + team.getId() + " }.captainId", equalTo(captain.getId().intValue())).
+            body("find { it.id == " + team.getId() + " }.members.displayName",
+                    containsInAnyOrder(captain.getProfile().getDisplayName(), member.getProfile().getDisplayName()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTeamSummariesAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(TEAM_ENDPOINT + "?summary").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
     //endregion
 
     //region Test Add/Invite Members
@@ -30,6 +30,7 @@
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.products.service.TicketService;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
+import ch.wisv.areafiftylan.seats.service.SeatService;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.security.token.repository.TicketTransferTokenRepository;
 import ch.wisv.areafiftylan.teams.model.Team;
@@ -70,6 +71,8 @@ public class TicketRestIntegrationTest extends XAuthIntegrationTest {
     private TicketService ticketService;
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private SeatService seatService;
 
     @Test
     public void testGetAllTicketsAsAnon() {
@@ -861,16 +864,130 @@ public void testExportAsAnon() {
     public void testGetExportAsAdmin() {
         User admin = createAdmin();
         createTicket(admin, Collections.singletonList(PICKUP_SERVICE));
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        createTicketForUser(user);
+        Team team = addMemberToTeam(createTeamWithCaptain(user), admin);
+        seatService.reserveSeat("A", 5, ticket.getId(), true);
+
+        try {
+            String exportedUser = "users.find { it.userId == " + user.getId() + " }";
+            String exportedTeam = "teams.find { it.teamId == " + team.getId() + " }";
+
+            //@formatter:off
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+            when().
+                get("/export").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("users.email", hasItem(admin.getEmail())).
+                body("users.findAll { it.userId == " + user.getId() + " }", hasSize(1)).
+                body(exportedUser + ".email", equalTo(user.getEmail())).
+                body(exportedUser + ".seat", contains("A5")).
+                body(exportedTeam + ".teamname", equalTo(team.getTeamName())).
+                body(exportedTeam + ".captainId", equalTo(user.getId().intValue())).
+                body(exportedTeam + ".members",
+                        containsInAnyOrder(user.getId().intValue(), admin.getId().intValue()));
+            //@formatter:on
+        } finally {
+            seatService.clearSeat("A", 5);
+        }
+    }
+
+    @Test
+    public void testGetExportAsNdjson() {
+        User admin = createAdmin();
+        createTicket(admin, Collections.singletonList(PICKUP_SERVICE));
 
         //@formatter:off
         given().
             header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
         when().
             get("/export").
         then().
-            statusCode(HttpStatus.SC_OK);
+            statusCode(HttpStatus.SC_OK).
+            header("X-Export-Cursor", notNullValue()).
+            body(containsString("\"type\":\"user\"")).
+            body(containsString(admin.getEmail()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetExportAsCsv() {
+        User admin = createAdmin();
+        createTicket(admin, Collections.singletonList(PICKUP_SERVICE));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("text/csv").
+        when().
+            get("/export").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body(startsWith("type,id,email,passwordHash,displayname")).
+            body(containsString("user," + admin.getId() + "," + admin.getEmail()));
         //@formatter:on
+    }
 
+    @Test
+    public void testGetExportSinceCursor() {
+        User admin = createAdmin();
+        createTicket(admin, Collections.singletonList(PICKUP_SERVICE));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+            param("since", LocalDateTime.now().minusMinutes(10).toString()).
+        when().
+            get("/export").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body(containsString(admin.getEmail()));
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+            param("since", LocalDateTime.now().plusMinutes(10).toString()).
+        when().
+            get("/export").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body(not(containsString(admin.getEmail())));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetExportSinceCursorPerTable() {
+        User admin = createAdmin();
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        LocalDateTime since = LocalDateTime.now();
+
+        // Only the profile and the seat change after the cursor
+        user.getProfile().setDisplayName("Changed" + user.getId());
+        userRepository.save(user);
+        seatService.reserveSeat("A", 4, ticket.getId(), true);
+
+        try {
+            //@formatter:off
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                accept("application/x-ndjson").
+                param("since", since.toString()).
+            when().
+                get("/export").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body(containsString("\"displayname\":\"Changed" + user.getId() + "\"")).
+                body(containsString("\"seat\":\"A4\",\"userId\":" + user.getId()));
+            //@formatter:on
+        } finally {
+            seatService.clearSeat("A", 4);
+        }
     }
 
     @Test
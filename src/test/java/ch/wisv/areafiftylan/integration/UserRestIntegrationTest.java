@@ -322,6 +322,74 @@ public void createUserEmptyPasswordField() {
         //@formatter:on
     }
 
+    @Test
+    public void checkEmailAvailableAfterRegistration() {
+        Map<String, String> userDTO = new HashMap<>();
+        userDTO.put("email", "available@mail.com");
+        userDTO.put("password", cleartextPassword);
+
+        //@formatter:off
+        given().
+        when().
+            queryParam("email", "AVAILABLE@mail.com").
+            get("/users/available").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object", equalTo(true));
+
+        given().
+        when().
+            body(userDTO).contentType(ContentType.JSON).
+            post("/users").
+        then().
+            statusCode(HttpStatus.SC_CREATED);
+
+        given().
+        when().
+            queryParam("email", "AVAILABLE@mail.com").
+            get("/users/available").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object", equalTo(false));
+        //@formatter:on
+    }
+
+    @Test
+    public void getVerificationMailStatusAfterRegistration() {
+        Map<String, String> userDTO = new HashMap<>();
+        userDTO.put("email", "verification@mail.com");
+        userDTO.put("password", cleartextPassword);
+
+        //@formatter:off
+        given().
+        when().
+            body(userDTO).contentType(ContentType.JSON).
+            post("/users").
+        then().
+            statusCode(HttpStatus.SC_CREATED);
+
+        given().
+        when().
+            queryParam("email", "VERIFICATION@mail.com").
+            get("/users/verification").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object", isOneOf("PENDING", "SENT"));
+        //@formatter:on
+    }
+
+    @Test
+    public void getVerificationMailStatusUnknownEmail() {
+        //@formatter:off
+        given().
+        when().
+            queryParam("email", "unknown@mail.com").
+            get("/users/verification").
+        then().
+            statusCode(HttpStatus.SC_NOT_FOUND);
+        //@formatter:on
+    }
+
     @Test
     public void createUserTakenEmail() {
         User user = createUser();
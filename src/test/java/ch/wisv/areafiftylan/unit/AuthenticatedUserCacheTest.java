@@ -0,0 +1,163 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.exception.InvalidTokenException;
+import ch.wisv.areafiftylan.exception.XAuthTokenNotFoundException;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUser;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUserCache;
+import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
+import ch.wisv.areafiftylan.security.authentication.AuthenticationServiceImpl;
+import ch.wisv.areafiftylan.security.token.AuthenticationToken;
+import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
+import ch.wisv.areafiftylan.security.token.repository.PasswordResetTokenRepository;
+import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.RoleDTO;
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthenticatedUserCacheTest extends ServiceTest {
+
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+    @Autowired
+    private AuthenticationTokenRepository authenticationTokenRepository;
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+    @Autowired
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+    @Autowired
+    private UserService userService;
+
+    private AuthenticationService authenticationService;
+
+    @BeforeEach
+    public void setUpAuthenticationService() {
+        authenticationService =
+                new AuthenticationServiceImpl(authenticationTokenRepository, verificationTokenRepository,
+                        passwordResetTokenRepository, userService, authenticatedUserCache);
+    }
+
+    @AfterEach
+    public void clearCache() {
+        authenticatedUserCache.evictAll();
+    }
+
+    private AuthenticationToken persistToken(User user) {
+        return authenticationTokenRepository.saveAndFlush(new AuthenticationToken(user));
+    }
+
+    private RoleDTO role(Role role) {
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setRole(role);
+        return roleDTO;
+    }
+
+    @Test
+    public void authenticateByTokenCachesPrincipalTest() {
+        User user = persistUser();
+        AuthenticationToken token = persistToken(user);
+
+        AuthenticatedUser principal = authenticationService.authenticateByToken(token.getToken());
+        assertEquals(user.getId(), principal.getId());
+
+        // The second lookup doesn't need the token row anymore
+        authenticationTokenRepository.delete(token);
+        authenticationTokenRepository.flush();
+        assertEquals(principal, authenticationService.authenticateByToken(token.getToken()));
+    }
+
+    @Test
+    public void getEvictsExpiredTokenTest() {
+        User user = persistUser();
+        AuthenticationToken token = new AuthenticationToken(user);
+        token.setExpiryDate(LocalDateTime.now().minusMinutes(1));
+        token = authenticationTokenRepository.saveAndFlush(token);
+
+        authenticatedUserCache.put(token);
+
+        assertFalse(authenticatedUserCache.get(token.getToken()).isPresent());
+        String xAuth = token.getToken();
+        assertThrows(InvalidTokenException.class, () -> authenticationService.authenticateByToken(xAuth));
+    }
+
+    @Test
+    public void logoutEvictsTokenTest() {
+        User user = persistUser();
+        String xAuth = persistToken(user).getToken();
+        authenticationService.authenticateByToken(xAuth);
+
+        authenticationService.removeAuthToken(xAuth);
+
+        assertFalse(authenticatedUserCache.get(xAuth).isPresent());
+        assertThrows(InvalidTokenException.class, () -> authenticationService.authenticateByToken(xAuth));
+    }
+
+    @Test
+    public void removeAuthTokenForUserEvictsTokensTest() {
+        User user = persistUser();
+        String xAuth = persistToken(user).getToken();
+        authenticationService.authenticateByToken(xAuth);
+
+        authenticationService.removeAuthTokenForUser(user);
+
+        assertThrows(XAuthTokenNotFoundException.class, () -> authenticationService.authenticateByToken(xAuth));
+    }
+
+    @Test
+    public void lockEvictsUserTest() {
+        User user = persistUser();
+        String xAuth = persistToken(user).getToken();
+        assertTrue(authenticationService.authenticateByToken(xAuth).isAccountNonLocked());
+
+        userService.lock(user.getId());
+
+        assertFalse(authenticatedUserCache.get(xAuth).isPresent());
+        assertFalse(authenticationService.authenticateByToken(xAuth).isAccountNonLocked());
+    }
+
+    @Test
+    public void addRoleEvictsUserTest() {
+        User user = persistUser();
+        String xAuth = persistToken(user).getToken();
+        assertFalse(authenticationService.authenticateByToken(xAuth).hasRole(Role.ROLE_ADMIN));
+
+        userService.addRole(user.getId(), role(Role.ROLE_ADMIN));
+
+        assertTrue(authenticationService.authenticateByToken(xAuth).hasRole(Role.ROLE_ADMIN));
+    }
+
+    @Test
+    public void deleteRoleEvictsUserTest() {
+        User user = persistUser();
+        userService.addRole(user.getId(), role(Role.ROLE_ADMIN));
+        String xAuth = persistToken(user).getToken();
+        assertTrue(authenticationService.authenticateByToken(xAuth).hasRole(Role.ROLE_ADMIN));
+
+        userService.deleteRole(user.getId(), role(Role.ROLE_ADMIN));
+
+        assertFalse(authenticationService.authenticateByToken(xAuth).hasRole(Role.ROLE_ADMIN));
+    }
+
+    @Test
+    public void evictUserKeepsOtherUsersTest() {
+        User user = persistUser();
+        User other = persistUser();
+        String xAuth = persistToken(user).getToken();
+        String otherXAuth = persistToken(other).getToken();
+        authenticationService.authenticateByToken(xAuth);
+        authenticationService.authenticateByToken(otherXAuth);
+
+        authenticatedUserCache.evictUser(user.getId());
+
+        assertFalse(authenticatedUserCache.get(xAuth).isPresent());
+        assertTrue(authenticatedUserCache.get(otherXAuth).isPresent());
+    }
+}
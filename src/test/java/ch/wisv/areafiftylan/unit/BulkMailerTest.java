@@ -0,0 +1,93 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.utils.lease.JobLeases;
+import ch.wisv.areafiftylan.utils.mail.BulkMailJob;
+import ch.wisv.areafiftylan.utils.mail.BulkMailJobRepository;
+import ch.wisv.areafiftylan.utils.mail.BulkMailJobStatus;
+import ch.wisv.areafiftylan.utils.mail.BulkMailer;
+import ch.wisv.areafiftylan.utils.mail.MailTemplates;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import({BulkMailer.class, JobLeases.class})
+public class BulkMailerTest extends ServiceTest {
+
+    private static final String OTHER_NODE = "other-node";
+
+    @Autowired
+    BulkMailer bulkMailer;
+
+    @Autowired
+    BulkMailJobRepository bulkMailJobRepository;
+
+    @Autowired
+    JobLeases jobLeases;
+
+    @MockBean
+    JavaMailSender mailSender;
+
+    @MockBean
+    MailTemplates mailTemplates;
+
+    private Long persistJob(BulkMailJobStatus status, String owner, LocalDateTime heartbeatAt) {
+        BulkMailJob job = new BulkMailJob();
+        job.setTarget("All users");
+        job.setSubject("Subject");
+        job.setStatus(status);
+        job.setOwner(owner);
+        job.setCreatedAt(heartbeatAt);
+        job.setHeartbeatAt(heartbeatAt);
+        return bulkMailJobRepository.saveAndFlush(job).getId();
+    }
+
+    private BulkMailJob getJob(Long jobId) {
+        return bulkMailJobRepository.findById(jobId).orElseThrow();
+    }
+
+    @Test
+    public void heartbeatFailsAbandonedJobs() {
+        LocalDateTime stopped = LocalDateTime.now().minusMinutes(10);
+        Long queued = persistJob(BulkMailJobStatus.QUEUED, OTHER_NODE, stopped);
+        Long running = persistJob(BulkMailJobStatus.RUNNING, OTHER_NODE, stopped);
+        Long finished = persistJob(BulkMailJobStatus.FINISHED, OTHER_NODE, stopped);
+
+        bulkMailer.heartbeat();
+
+        for (Long jobId : new Long[] { queued, running }) {
+            BulkMailJob job = getJob(jobId);
+            assertEquals(BulkMailJobStatus.FAILED, job.getStatus());
+            assertEquals("Interrupted by restart", job.getLastError());
+            assertNotNull(job.getFinishedAt());
+        }
+        assertEquals(BulkMailJobStatus.FINISHED, getJob(finished).getStatus());
+        assertNull(getJob(finished).getLastError());
+    }
+
+    @Test
+    public void heartbeatKeepsJobsOfLiveNodes() {
+        Long running = persistJob(BulkMailJobStatus.RUNNING, OTHER_NODE, LocalDateTime.now().minusMinutes(1));
+
+        bulkMailer.heartbeat();
+
+        assertEquals(BulkMailJobStatus.RUNNING, getJob(running).getStatus());
+    }
+
+    @Test
+    public void heartbeatRenewsOwnJobs() {
+        LocalDateTime lastHeartbeat = LocalDateTime.now().minusMinutes(10);
+        Long queued = persistJob(BulkMailJobStatus.QUEUED, jobLeases.getOwner(), lastHeartbeat);
+
+        bulkMailer.heartbeat();
+
+        BulkMailJob job = getJob(queued);
+        assertEquals(BulkMailJobStatus.QUEUED, job.getStatus());
+        assertTrue(job.getHeartbeatAt().isAfter(lastHeartbeat));
+    }
+}
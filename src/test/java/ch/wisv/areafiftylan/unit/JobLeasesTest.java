@@ -0,0 +1,61 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.utils.lease.JobLeases;
+import ch.wisv.areafiftylan.utils.lease.SchedulerLease;
+import ch.wisv.areafiftylan.utils.lease.SchedulerLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import(JobLeases.class)
+@TestPropertySource(properties = "a5l.scheduling.leases=true")
+public class JobLeasesTest extends ServiceTest {
+
+    @Autowired
+    JobLeases jobLeases;
+
+    @Autowired
+    SchedulerLeaseRepository schedulerLeaseRepository;
+
+    @Test
+    public void runExclusivelyHoldsLease() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(jobLeases.runExclusively("HoldsLease", Duration.ofMinutes(1), Duration.ofMinutes(1),
+                runs::incrementAndGet));
+        assertFalse(jobLeases.runExclusively("HoldsLease", Duration.ofMinutes(1), Duration.ofMinutes(1),
+                runs::incrementAndGet));
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void runExclusivelyAfterMinHold() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(jobLeases.runExclusively("AfterMinHold", Duration.ofMinutes(1), Duration.ZERO,
+                runs::incrementAndGet));
+        assertTrue(jobLeases.runExclusively("AfterMinHold", Duration.ofMinutes(1), Duration.ZERO,
+                runs::incrementAndGet));
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void runExclusivelyRecordsLastRun() {
+        jobLeases.runExclusively("RecordsLastRun", Duration.ofMinutes(1), Duration.ofMinutes(1), () -> {
+        });
+
+        SchedulerLease lease = schedulerLeaseRepository.findById("RecordsLastRun").orElseThrow();
+        assertEquals(jobLeases.getOwner(), lease.getOwner());
+        assertTrue(lease.isHeld());
+        assertNotNull(lease.getLastRunAt());
+        assertNotNull(lease.getLastDurationMs());
+    }
+}
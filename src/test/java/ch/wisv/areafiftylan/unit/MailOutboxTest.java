@@ -0,0 +1,169 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.utils.mail.MailCategory;
+import ch.wisv.areafiftylan.utils.mail.MailDeliveryStatus;
+import ch.wisv.areafiftylan.utils.mail.MailOutbox;
+import ch.wisv.areafiftylan.utils.mail.MailOutboxRepository;
+import ch.wisv.areafiftylan.utils.mail.OutboxMail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+/**
+ * The outbox workers send from their own threads, so the mails have to be committed before they can see them. These
+ * tests don't run in a transaction, and clean up after themselves instead.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(MailOutbox.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class MailOutboxTest {
+
+    private static final String RECIPIENT = "outbox@mail.com";
+
+    @Autowired
+    private MailOutbox mailOutbox;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @MockBean
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    public void failingMailSender() {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage.class));
+    }
+
+    @AfterEach
+    public void clearOutbox() {
+        mailOutboxRepository.deleteAll();
+    }
+
+    private OutboxMail enqueue(MailDeliveryStatus status, int attempts) {
+        mailOutbox.enqueue(MailCategory.CONTACT, RECIPIENT, null, "Subject", "Content", false);
+        OutboxMail mail =
+                mailOutboxRepository.findFirstByCategoryAndRecipientIgnoreCaseOrderByIdDesc(MailCategory.CONTACT,
+                        RECIPIENT).orElseThrow();
+        mail.setStatus(status);
+        mail.setAttempts(attempts);
+        return mailOutboxRepository.save(mail);
+    }
+
+    private OutboxMail awaitAttempts(Long mailId, int attempts) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            OutboxMail mail = mailOutboxRepository.findById(mailId).orElseThrow();
+            if (mail.getAttempts() == attempts) {
+                return mail;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Mail " + mailId + " never reached " + attempts + " attempts");
+    }
+
+    @Test
+    public void drainClaimsMailsWhileSending() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new MailSendException("Connection refused");
+        }).when(mailSender).send(any(MimeMessage.class));
+        OutboxMail mail = enqueue(MailDeliveryStatus.PENDING, 0);
+        LocalDateTime before = LocalDateTime.now();
+
+        assertEquals(1, mailOutbox.drain());
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // The claim pushes the next attempt out, so the mail isn't due while a worker has it
+        OutboxMail claimed = mailOutboxRepository.findById(mail.getId()).orElseThrow();
+        assertTrue(claimed.getNextAttemptAt().isAfter(before.plusMinutes(9)));
+        assertEquals(0, mailOutbox.drain());
+
+        release.countDown();
+        awaitAttempts(mail.getId(), 1);
+    }
+
+    @Test
+    public void failedSendBacksOffExponentially() throws InterruptedException {
+        OutboxMail mail = enqueue(MailDeliveryStatus.PENDING, 3);
+        LocalDateTime before = LocalDateTime.now();
+
+        assertEquals(1, mailOutbox.drain());
+        OutboxMail failed = awaitAttempts(mail.getId(), 4);
+        LocalDateTime after = LocalDateTime.now();
+
+        // The fourth attempt waits 30 seconds, doubled three times
+        assertEquals(MailDeliveryStatus.PENDING, failed.getStatus());
+        assertEquals("Connection refused", failed.getLastError());
+        assertTrue(failed.getNextAttemptAt().isAfter(before.plusSeconds(239)));
+        assertTrue(failed.getNextAttemptAt().isBefore(after.plusSeconds(241)));
+        assertEquals(0, mailOutbox.drain());
+    }
+
+    @Test
+    public void failedSendGivesUpAfterMaxAttempts() throws InterruptedException {
+        OutboxMail mail = enqueue(MailDeliveryStatus.PENDING, 7);
+
+        assertEquals(1, mailOutbox.drain());
+        OutboxMail failed = awaitAttempts(mail.getId(), 8);
+
+        assertEquals(MailDeliveryStatus.FAILED, failed.getStatus());
+        assertEquals("Connection refused", failed.getLastError());
+        assertNull(failed.getSentAt());
+        assertEquals(mail.getId(), mailOutbox.getFailedMails(10).get(0).getId());
+        assertEquals(0, mailOutbox.drain());
+    }
+
+    @Test
+    public void retryFailedMail() throws InterruptedException {
+        OutboxMail mail = enqueue(MailDeliveryStatus.FAILED, 8);
+
+        assertTrue(mailOutbox.retry(mail.getId()));
+
+        OutboxMail retried = mailOutboxRepository.findById(mail.getId()).orElseThrow();
+        assertEquals(MailDeliveryStatus.PENDING, retried.getStatus());
+        assertEquals(0, retried.getAttempts());
+        assertFalse(retried.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertTrue(mailOutbox.getFailedMails(10).isEmpty());
+
+        // It starts over with a full set of attempts
+        assertEquals(1, mailOutbox.drain());
+        assertEquals(MailDeliveryStatus.PENDING, awaitAttempts(mail.getId(), 1).getStatus());
+    }
+
+    @Test
+    public void retryOnlyFailedMails() {
+        OutboxMail mail = enqueue(MailDeliveryStatus.PENDING, 2);
+
+        assertFalse(mailOutbox.retry(mail.getId()));
+        assertFalse(mailOutbox.retry(mail.getId() + 1));
+        assertEquals(2, mailOutboxRepository.findById(mail.getId()).orElseThrow().getAttempts());
+    }
+}
@@ -0,0 +1,70 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.utils.mail.MailTemplates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MailTemplatesTest {
+
+    private SpringTemplateEngine templateEngine;
+    private MailTemplates mailTemplates;
+
+    @BeforeEach
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        mailTemplates = new MailTemplates(templateEngine);
+        ReflectionTestUtils.setField(mailTemplates, "year", "2026");
+    }
+
+    private String process(String name, String message) {
+        Context ctx = new Context(new Locale("en"));
+        ctx.setVariable("name", name);
+        ctx.setVariable("message", message);
+        ctx.setVariable("year", "2026");
+        return templateEngine.process("mailTemplate", ctx);
+    }
+
+    @Test
+    public void renderMailMatchesTemplateEngine() {
+        String message = "Click <a href=\"https://areafiftylan.nl\">here</a>";
+
+        assertEquals(process(" Jan Jansen", message), mailTemplates.renderMail(" Jan Jansen", message));
+    }
+
+    @Test
+    public void renderMailEscapesName() {
+        String name = " <b>O'Neil</b> & \"Co\"";
+
+        assertEquals(process(name, "Message"), mailTemplates.renderMail(name, "Message"));
+    }
+
+    @Test
+    public void renderMailEmptyValues() {
+        assertEquals(process("", ""), mailTemplates.renderMail("", ""));
+        assertEquals(process(null, null), mailTemplates.renderMail(null, null));
+    }
+
+    @Test
+    public void renderMailReusesTemplate() {
+        mailTemplates.renderMail(" Jan Jansen", "First");
+
+        assertEquals(process(" Piet Pietersen", "Second"), mailTemplates.renderMail(" Piet Pietersen", "Second"));
+    }
+}
@@ -0,0 +1,73 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDIndex;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RFIDIndexTest {
+
+    private static final RFIDLinkEntry REMOVED =
+            new RFIDLinkEntry("1234567890", 1L, 1L, "removed@mail.com", "Removed", true);
+    private static final RFIDLinkEntry KEPT = new RFIDLinkEntry("0987654321", 2L, 2L, "kept@mail.com", "Kept", true);
+
+    private RFIDLinkRepository rfidLinkRepository;
+    private RFIDIndex rfidIndex;
+
+    @BeforeEach
+    public void setUp() {
+        rfidLinkRepository = mock(RFIDLinkRepository.class);
+        rfidIndex = new RFIDIndex(rfidLinkRepository);
+    }
+
+    @Test
+    public void reloadReplacesLinks() {
+        rfidIndex.put(REMOVED);
+        when(rfidLinkRepository.findAllEntries()).thenReturn(Collections.singletonList(KEPT));
+
+        rfidIndex.reload();
+
+        assertFalse(rfidIndex.get(REMOVED.getRfid()).isPresent());
+        assertFalse(rfidIndex.isOwnerLinked(REMOVED.getEmail()));
+        assertEquals(KEPT, rfidIndex.get(KEPT.getRfid()).orElseThrow());
+        assertTrue(rfidIndex.isTicketLinked(KEPT.getTicketId()));
+        assertTrue(rfidIndex.isOwnerLinked(KEPT.getEmail()));
+    }
+
+    @Test
+    public void reloadKeepsRemovalsDuringRead() {
+        rfidIndex.put(REMOVED);
+        // The link is removed after the reload read it from the database, but before the loaded links are swapped in
+        when(rfidLinkRepository.findAllEntries()).thenAnswer(invocation -> {
+            rfidIndex.remove(REMOVED.getRfid());
+            return Arrays.asList(REMOVED, KEPT);
+        });
+
+        rfidIndex.reload();
+
+        assertFalse(rfidIndex.get(REMOVED.getRfid()).isPresent());
+        assertFalse(rfidIndex.isTicketLinked(REMOVED.getTicketId()));
+        assertFalse(rfidIndex.isOwnerLinked(REMOVED.getEmail()));
+        assertTrue(rfidIndex.get(KEPT.getRfid()).isPresent());
+    }
+
+    @Test
+    public void removalsAfterReloadAreNotRemembered() {
+        when(rfidLinkRepository.findAllEntries()).thenReturn(Collections.emptyList());
+        rfidIndex.reload();
+        rfidIndex.remove(REMOVED.getRfid());
+
+        when(rfidLinkRepository.findAllEntries()).thenReturn(Collections.singletonList(REMOVED));
+        rfidIndex.reload();
+
+        assertTrue(rfidIndex.get(REMOVED.getRfid()).isPresent());
+    }
+}
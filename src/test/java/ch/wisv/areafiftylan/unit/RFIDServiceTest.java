@@ -2,6 +2,8 @@
 
 import ch.wisv.areafiftylan.exception.*;
 import ch.wisv.areafiftylan.extras.rfid.model.RFIDLink;
+import ch.wisv.areafiftylan.extras.rfid.model.RFIDLinkEntry;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDIndex;
 import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinkRepository;
 import ch.wisv.areafiftylan.extras.rfid.service.RFIDService;
 import ch.wisv.areafiftylan.products.model.Ticket;
@@ -10,7 +12,10 @@
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,6 +27,9 @@ public class RFIDServiceTest extends ServiceTest {
     @Autowired
     RFIDLinkRepository rfidLinkRepository;
 
+    @Autowired
+    RFIDIndex rfidIndex;
+
     private RFIDLink persistRFIDLink() {
         Ticket ticket = persistTicket();
         return persistRFIDLink(ticket);
@@ -185,4 +193,50 @@ public void isOwnerLinkedNotLinkedTest() throws Exception {
         persistTicketForUser(user);
         assertFalse(rfidService.isOwnerLinked(user.getEmail()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getTicketIdByRFIDFromIndexTest() {
+        User user = persistUser();
+        Ticket ticket = persistTicketForUser(user);
+        String rfid = "0000000001";
+        rfidIndex.put(new RFIDLinkEntry(rfid, ticket.getId(), user.getId(), user.getEmail(), null, true));
+
+        // The link only exists in the index, so the answer can't have come from the database
+        assertEquals(ticket.getId(), rfidService.getTicketIdByRFID(rfid));
+        assertTrue(rfidService.isOwnerLinked(user.getEmail()));
+        rfidIndex.remove(rfid);
+    }
+
+    @Test
+    public void getTicketIdsByRFIDsIgnoresIndexTest() {
+        User user = persistUser();
+        Ticket linked = persistTicketForUser(user);
+        Ticket stale = persistTicketForUser(user);
+        rfidLinkRepository.save(new RFIDLink("0000000001", linked));
+        // Links another node already removed or moved to a different ticket
+        rfidIndex.put(new RFIDLinkEntry("0000000001", stale.getId(), user.getId(), user.getEmail(), null, true));
+        rfidIndex.put(new RFIDLinkEntry("0000000002", stale.getId(), user.getId(), user.getEmail(), null, true));
+
+        Map<String, Long> ticketIds = rfidService.getTicketIdsByRFIDs(Arrays.asList("0000000001", "0000000002"));
+
+        assertEquals(Collections.singletonMap("0000000001", linked.getId()), ticketIds);
+        assertFalse(rfidService.isTicketLinked(stale.getId()));
+        rfidIndex.remove("0000000001");
+        rfidIndex.remove("0000000002");
+    }
+
+    @Test
+    public void removeRFIDLinkRemovesFromIndexTest() {
+        User user = persistUser();
+        Ticket ticket = persistTicketForUser(user);
+        String rfid = "0000000001";
+        rfidLinkRepository.save(new RFIDLink(rfid, ticket));
+        rfidIndex.put(new RFIDLinkEntry(rfid, ticket.getId(), user.getId(), user.getEmail(), null, true));
+
+        rfidService.removeRFIDLink(rfid);
+
+        assertFalse(rfidIndex.get(rfid).isPresent());
+        assertFalse(rfidService.isTicketLinked(ticket.getId()));
+        Assertions.assertThrows(RFIDNotFoundException.class, () -> rfidService.getTicketIdByRFID(rfid));
+    }
+}
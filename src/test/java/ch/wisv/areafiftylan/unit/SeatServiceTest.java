@@ -38,4 +38,13 @@ public void testRemoveSeatNegativeSeats() {
 
         assertThrows(IllegalArgumentException.class, () -> seatService.removeSeats(seatGroupDTO));
     }
+
+    @Test
+    public void testAddSeatsReservedGroupName() {
+        SeatGroupDTO seatGroupDTO = new SeatGroupDTO();
+        seatGroupDTO.setSeatGroupName("teams");
+        seatGroupDTO.setNumberOfSeats(5);
+
+        assertThrows(IllegalArgumentException.class, () -> seatService.addSeats(seatGroupDTO));
+    }
 }
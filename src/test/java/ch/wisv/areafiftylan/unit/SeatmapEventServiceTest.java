@@ -0,0 +1,156 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.seats.model.SeatmapDelta;
+import ch.wisv.areafiftylan.seats.model.SeatmapSnapshot;
+import ch.wisv.areafiftylan.seats.service.SeatmapEventServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatmapEventServiceTest {
+
+    private final Queue<SseEmitter> emitters = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SeatmapEventServiceImpl seatmapEventService;
+
+    @BeforeEach
+    public void setUp() {
+        seatmapEventService = new SeatmapEventServiceImpl() {
+            @Override
+            protected SseEmitter createEmitter() {
+                return emitters.remove();
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        seatmapEventService.shutdown();
+    }
+
+    private SeatmapSnapshot snapshot(long version) {
+        return new SeatmapSnapshot(version, "\"etag" + version + "\"", System.currentTimeMillis(), new byte[0], null);
+    }
+
+    private List<SeatmapDelta> deltas(long fromVersion, int count) {
+        List<SeatmapDelta> deltas = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            deltas.add(new SeatmapDelta(fromVersion + i, "A", 1, true, false, false, "DisplayName"));
+        }
+        return deltas;
+    }
+
+    private RecordingEmitter subscribe(RecordingEmitter emitter) {
+        emitters.add(emitter);
+        seatmapEventService.subscribe(snapshot(1));
+        return emitter;
+    }
+
+    @Test
+    public void subscribeSendsVersionFirstTest() throws InterruptedException {
+        RecordingEmitter emitter = subscribe(new RecordingEmitter(null));
+
+        String event = emitter.next();
+        assertTrue(event.contains("event:version"));
+        assertTrue(event.contains("etag1"));
+        assertEquals(1, seatmapEventService.getSubscriberCount());
+    }
+
+    @Test
+    public void publishSendsDeltasInOrderTest() throws InterruptedException {
+        RecordingEmitter emitter = subscribe(new RecordingEmitter(null));
+        emitter.next();
+
+        seatmapEventService.publish(deltas(2, 2));
+
+        String first = emitter.next();
+        String second = emitter.next();
+        assertTrue(first.contains("event:seat") && first.contains("id:2"));
+        assertTrue(second.contains("event:seat") && second.contains("id:3"));
+    }
+
+    @Test
+    public void publishReloadTest() throws InterruptedException {
+        RecordingEmitter emitter = subscribe(new RecordingEmitter(null));
+        emitter.next();
+
+        seatmapEventService.publishReload(5);
+
+        String event = emitter.next();
+        assertTrue(event.contains("event:reload") && event.contains("id:5"));
+    }
+
+    @Test
+    public void slowSubscriberIsDroppedTest() throws InterruptedException {
+        // This one blocks while sending its first event, so everything after it stays queued
+        RecordingEmitter stalled = subscribe(new RecordingEmitter(release));
+        RecordingEmitter healthy = subscribe(new RecordingEmitter(null));
+
+        seatmapEventService.publish(deltas(2, 200));
+        for (int i = 0; i < 201; i++) {
+            healthy.next();
+        }
+        assertFalse(stalled.completed);
+
+        // The stalled subscriber had 200 queued events, these overflow its buffer of 256
+        seatmapEventService.publish(deltas(202, 100));
+
+        assertTrue(stalled.completed);
+        assertEquals(1, seatmapEventService.getSubscriberCount());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(healthy.next().contains("id:" + (202 + i)));
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+        private volatile boolean completed;
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            events.add(builder.build().stream()
+                    .map(data -> String.valueOf(data.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        private String next() throws InterruptedException {
+            String event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "No event received");
+            return event;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package ch.wisv.areafiftylan.unit;
 
 import ch.wisv.areafiftylan.TestRunner;
+import ch.wisv.areafiftylan.extras.counters.service.LiveCounterServiceImpl;
 import ch.wisv.areafiftylan.extras.mailupdates.service.SubscriptionServiceImpl;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDIndex;
 import ch.wisv.areafiftylan.extras.rfid.service.RFIDServiceImpl;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.*;
@@ -9,7 +11,11 @@
 import ch.wisv.areafiftylan.products.service.repository.TicketOptionRepository;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import ch.wisv.areafiftylan.products.service.repository.TicketTypeRepository;
+import ch.wisv.areafiftylan.seats.service.SeatHoldRegistry;
 import ch.wisv.areafiftylan.seats.service.SeatServiceImpl;
+import ch.wisv.areafiftylan.seats.service.SeatmapEventServiceImpl;
+import ch.wisv.areafiftylan.seats.service.TeamSeatCache;
+import ch.wisv.areafiftylan.security.authentication.AuthenticatedUserCache;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamServiceImpl;
@@ -17,6 +23,7 @@
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserRepository;
 import ch.wisv.areafiftylan.users.service.UserServiceImpl;
+import ch.wisv.areafiftylan.utils.NameAvailabilityIndex;
 import ch.wisv.areafiftylan.utils.mail.MailServiceImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -40,7 +47,7 @@
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @DataJpaTest
-@Import({TestRunner.class, OrderServiceImpl.class, RFIDServiceImpl.class, SeatServiceImpl.class, TicketServiceImpl.class, SubscriptionServiceImpl.class, UserServiceImpl.class, TeamServiceImpl.class})
+@Import({TestRunner.class, OrderServiceImpl.class, RFIDServiceImpl.class, RFIDIndex.class, LiveCounterServiceImpl.class, SeatServiceImpl.class, SeatmapEventServiceImpl.class, SeatHoldRegistry.class, TeamSeatCache.class, TicketServiceImpl.class, SubscriptionServiceImpl.class, UserServiceImpl.class, TeamServiceImpl.class, AuthenticatedUserCache.class, NameAvailabilityIndex.class})
 public abstract class ServiceTest {
 
     @MockBean
@@ -2,22 +2,39 @@
 
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.security.authentication.AuthenticationServiceImpl;
+import ch.wisv.areafiftylan.security.token.VerificationToken;
+import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
+import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.utils.ScheduledTasks;
+import ch.wisv.areafiftylan.utils.lease.JobLeases;
+import ch.wisv.areafiftylan.utils.mail.BulkMailer;
+import ch.wisv.areafiftylan.utils.mail.MailOutbox;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSender;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@Import({ScheduledTasks.class, AuthenticationServiceImpl.class})
+@Import({ScheduledTasks.class, AuthenticationServiceImpl.class, JobLeases.class, MailOutbox.class})
 public class TaskSchedulerTest extends ServiceTest {
 
     @Autowired
     ScheduledTasks scheduledTasks;
 
+    @Autowired
+    VerificationTokenRepository verificationTokenRepository;
+
+    @MockBean
+    JavaMailSender mailSender;
+
+    @MockBean
+    BulkMailer bulkMailer;
+
     @Test
     public void expireOrders() {
         Order order = new Order();
@@ -44,4 +61,25 @@ public void expireOrderWithTicket() {
         Optional<Order> expiredOrder = orderRepository.findById(order.getId());
         assertTrue(expiredOrder.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void cleanUpUnverifiedUsers() {
+        User unverified = persistUser();
+        unverified.setEnabled(false);
+        VerificationToken expiredToken = new VerificationToken(unverified);
+        expiredToken.setExpiryDate(LocalDateTime.now().minusDays(1));
+        verificationTokenRepository.saveAndFlush(expiredToken);
+
+        User verified = persistUser();
+        VerificationToken usedToken = new VerificationToken(verified);
+        usedToken.setExpiryDate(LocalDateTime.now().minusDays(1));
+        usedToken.use();
+        verificationTokenRepository.saveAndFlush(usedToken);
+
+        scheduledTasks.CleanUpUsers();
+
+        assertTrue(userRepository.findById(unverified.getId()).isEmpty());
+        assertTrue(verificationTokenRepository.findById(expiredToken.getId()).isEmpty());
+        assertTrue(userRepository.findById(verified.getId()).isPresent());
+    }
+}
@@ -560,6 +560,18 @@ public void assignTicketToUserFromOtherUser() {
         assertEquals(user, result.getOwner());
     }
 
+    @Test
+    public void assignLinkedTicketToOtherUser() {
+        User user = persistUser();
+        User owner = persistUser();
+        Ticket ticket = persistTicketForUser(owner);
+        testEntityManager.persist(new RFIDLink("1234567890", ticket));
+
+        Ticket result = ticketService.assignTicketToUser(ticket.getId(), user.getEmail());
+        assertEquals(user, result.getOwner());
+        assertEquals(user, ticketRepository.findById(ticket.getId()).orElseThrow().getOwner());
+    }
+
     //region TicketType
 
     @Test